@@ -0,0 +1,75 @@
+package pack;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Пакетное сопоставление коротких строк: цикл из matches против matchAll (входы в ногу по
+// CompiledDFA.LANES) и параллельного matchAll. Таблицы от помещающейся в L1 до нескольких мегабайт.
+public class BatchMatchBenchmark {
+    private static final int BATCH = 1 << 16;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) {
+        // n-й символ с конца: 2^(n+1) состояний, таблица растёт вдвое с каждым n
+        int[] windows = {4, 12, 16};
+        int[] lengths = {16, 64};
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.printf("Пакет %d строк, потоков в пуле: %d%n", BATCH, pool.getParallelism());
+        for (int window : windows) {
+            CompiledDFA dfa = DFAMinimizer.minimize(NFAToDFAConverter.compile(
+                    RegexParser.parseRegexToNFA("(a|b)*.a.(a|b){" + window + "}")));
+            System.out.printf("(a|b)*.a.(a|b){%d}: %d состояний, таблица %d КБ%n",
+                    window, dfa.getStateCount(), dfa.estimatedSize() >> 10);
+            for (int length : lengths) {
+                String[] inputs = inputs(BATCH, length, new Random(length));
+                BitSet expected = new BitSet();
+                BitSet out = new BitSet();
+
+                long single = measure(() -> {
+                    for (int i = 0; i < inputs.length; i++) {
+                        expected.set(i, dfa.matches(inputs[i]));
+                    }
+                });
+                long batch = measure(() -> dfa.matchAll(inputs, out));
+                check(expected, out, "matchAll");
+                long parallel = measure(() -> dfa.matchAll(inputs, out, pool));
+                check(expected, out, "parallel matchAll");
+
+                System.out.printf("  длина %3d: matches %7.1f нс/строка, matchAll %7.1f (x%.2f), параллельно %7.1f (x%.2f)%n",
+                        length, (double) single / BATCH, (double) batch / BATCH, (double) single / batch,
+                        (double) parallel / BATCH, (double) single / parallel);
+            }
+        }
+    }
+
+    private static long measure(Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < WARMUP + RUNS; run++) {
+            long start = System.nanoTime();
+            operation.run();
+            long time = System.nanoTime() - start;
+            if (run >= WARMUP) best = Math.min(best, time);
+        }
+        return best;
+    }
+
+    private static void check(BitSet expected, BitSet actual, String name) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " differs from matches");
+        }
+    }
+
+    private static String[] inputs(int count, int length, Random random) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sb.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            result[i] = sb.toString();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+package pack;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Набор замеров: разбор регулярного выражения, операторы NFABuilder, детерминизация и сопоставление.
+// Прогоняется по корпусу шаблонов (вложенные звёзды, широкие объединения, shuffle) и длинам входа;
+// для каждого замера печатается время и объём выделенной памяти на операцию.
+// Запуск: java pack.Benchmarks [фильтр по имени замера]
+public class Benchmarks {
+    private static final Map<String, String> CORPUS = new LinkedHashMap<>();
+    private static final int[] INPUT_LENGTHS = {16, 256, 4096};
+    private static final long WARMUP_NANOS = 300_000_000L;
+    private static final long MEASURE_NANOS = 700_000_000L;
+
+    static {
+        CORPUS.put("nested-stars", "((((a.b)*.c)*.(d|a))*.e)*");
+        CORPUS.put("wide-union", "(" + String.join("|", letters(52)) + ")*");
+        CORPUS.put("suffix-window", "(a|b)*.a.(a|b).(a|b).(a|b).(a|b).(a|b)");
+        CORPUS.put("shuffle", "(((a.b)*||(c.d)*)||(e|f)*)");
+        CORPUS.put("identifier-classes", "[a-zA-Z_].[a-zA-Z0-9_]*.(\\..[a-zA-Z_].[a-zA-Z0-9_]*)*");
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        System.out.printf("%-24s %-16s %14s %14s%n", "замер", "параметры", "нс/оп", "байт/оп");
+
+        for (Map.Entry<String, String> entry : CORPUS.entrySet()) {
+            String name = entry.getKey();
+            String regex = entry.getValue();
+            NFA nfa = RegexParser.parseRegexToNFA(regex);
+            DFA dfa = NFAToDFAConverter.convert(nfa);
+            CompiledDFA compiled = NFAToDFAConverter.compile(nfa);
+
+            run(filter, "parse", name, () -> RegexParser.parseRegexToNFA(regex));
+            run(filter, "convert", name, () -> NFAToDFAConverter.convert(nfa));
+            run(filter, "compile", name, () -> NFAToDFAConverter.compile(nfa));
+            run(filter, "minimize", name, () -> DFAMinimizer.minimize(compiled));
+
+            for (int length : INPUT_LENGTHS) {
+                String input = randomWalk(compiled, length, new Random(length));
+                String params = name + "/" + length;
+                run(filter, "DFA.matches", params, () -> dfa.matches(input));
+                run(filter, "CompiledDFA.matches", params, () -> compiled.matches(input));
+            }
+        }
+
+        NFA a = RegexParser.parseRegexToNFA("(a.b)*");
+        NFA b = RegexParser.parseRegexToNFA("(c|d).e");
+        run(filter, "NFABuilder.createCharNFA", "", () -> NFABuilder.createCharNFA('a'));
+        run(filter, "NFABuilder.concat", "", () -> NFABuilder.concat(a, b));
+        run(filter, "NFABuilder.union", "", () -> NFABuilder.union(a, b));
+        run(filter, "NFABuilder.star", "", () -> NFABuilder.star(a));
+        run(filter, "NFABuilder.shuffle", "", () -> NFABuilder.shuffle(a, b));
+
+        // Поиск по тексту с редкими вхождениями: литеральный предфильтр против полного прохода автоматами
+        String logRegex = "error.[0-9]+";
+        String text = logText(1 << 16, new Random(1));
+        Searcher prefiltered = Searcher.compile(logRegex);
+        Searcher plain = new Searcher(RegexParser.parseRegexToNFA(logRegex));
+        run(filter, "Searcher.findAll", "prefilter", () -> prefiltered.findAll(text));
+        run(filter, "Searcher.findAll", "automaton", () -> plain.findAll(text));
+    }
+
+    private static String logText(int length, Random random) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            if (random.nextInt(1000) == 0) {
+                sb.append("error").append(random.nextInt(100));
+            } else {
+                sb.append(random.nextInt(8) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void run(String filter, String benchmark, String params, Supplier<?> operation) {
+        if (!benchmark.contains(filter)) {
+            return;
+        }
+        loop(operation, WARMUP_NANOS);
+
+        long bytesBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long ops = loop(operation, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        long bytes = THREADS.getCurrentThreadAllocatedBytes() - bytesBefore;
+
+        System.out.printf("%-24s %-16s %14.1f %14.1f%n", benchmark, params, (double) elapsed / ops, (double) bytes / ops);
+    }
+
+    private static long loop(Supplier<?> operation, long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long ops = 0;
+        do {
+            for (int i = 0; i < 16; i++) {
+                sink = operation.get();
+            }
+            ops += 16;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    // Вход, который автомат не отвергает досрочно: случайное блуждание по живым переходам
+    static String randomWalk(CompiledDFA dfa, int length, Random random) {
+        StringBuilder sb = new StringBuilder(length);
+        AlphabetMap alphabet = dfa.getAlphabet();
+        int[] live = new int[dfa.getClassCount()];
+        int state = dfa.getStartState();
+        while (sb.length() < length) {
+            int count = 0;
+            for (int cls = AlphabetMap.OTHER + 1; cls < dfa.getClassCount(); cls++) {
+                if (dfa.transition(state, cls) != CompiledDFA.DEAD) {
+                    live[count++] = cls;
+                }
+            }
+            if (count == 0) {
+                state = dfa.getStartState();
+                continue;
+            }
+            int cls = live[random.nextInt(count)];
+            sb.append(alphabet.symbolOf(cls));
+            state = dfa.transition(state, cls);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> letters(int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(String.valueOf((char) (i < 26 ? 'a' + i : 'A' + i - 26)));
+        }
+        return result;
+    }
+}
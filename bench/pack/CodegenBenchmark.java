@@ -0,0 +1,70 @@
+package pack;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Predicate;
+
+// Сгенерированный байт-код (BytecodeDFA) против табличного CompiledDFA.matches на одних и тех же входах.
+// Последний шаблон больше BytecodeDFA.MAX_STATES и показывает запасной табличный путь.
+public class CodegenBenchmark {
+    private static final String[] PATTERNS = {
+            "[a-zA-Z_].[a-zA-Z0-9_]*",
+            "(a|b)*.a.(a|b){4}",
+            "((a.b)*||(c.d)*)",
+            "(a|b)*.a.(a|b){10}",
+    };
+    private static final int INPUTS = 1024;
+    private static final int LENGTH = 64;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        for (String regex : PATTERNS) {
+            CompiledDFA table = DFAMinimizer.minimize(NFAToDFAConverter.compile(RegexParser.parseRegexToNFA(regex)));
+            Predicate<CharSequence> generated = BytecodeDFA.compile(table);
+            Random random = new Random(regex.hashCode());
+            String[] inputs = new String[INPUTS];
+            for (int i = 0; i < INPUTS; i++) {
+                inputs[i] = Benchmarks.randomWalk(table, LENGTH, random);
+                if (generated.test(inputs[i]) != table.matches(inputs[i])) {
+                    throw new IllegalStateException("Generated matcher differs on " + inputs[i]);
+                }
+            }
+
+            // Случайные входы дают непредсказуемые ветвления в сравнениях диапазонов;
+            // повторяющийся вход — предсказуемые, как у однотипных строк в реальных данных
+            String[] repeated = new String[INPUTS];
+            Arrays.fill(repeated, inputs[0]);
+
+            System.out.printf("%-24s %4d состояний, %s%n", regex, table.getStateCount(),
+                    BytecodeDFA.isGenerated(generated) ? "байт-код" : "запасной табличный путь");
+            report("случайные", inputs, table, generated);
+            report("повторяющиеся", repeated, table, generated);
+        }
+    }
+
+    private static void report(String name, String[] inputs, CompiledDFA table, Predicate<CharSequence> generated) {
+        long tableTime = measure(inputs, table::matches);
+        long generatedTime = measure(inputs, generated);
+        System.out.printf("  %-14s таблица %7.1f нс/строка, байт-код %7.1f нс/строка (x%.2f)%n", name,
+                (double) tableTime / INPUTS, (double) generatedTime / INPUTS, (double) tableTime / generatedTime);
+    }
+
+    private static long measure(String[] inputs, Predicate<CharSequence> matcher) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < WARMUP + RUNS; run++) {
+            long start = System.nanoTime();
+            int hits = 0;
+            for (int repeat = 0; repeat < 100; repeat++) {
+                for (String input : inputs) {
+                    if (matcher.test(input)) hits++;
+                }
+            }
+            sink = hits;
+            long time = (System.nanoTime() - start) / 100;
+            if (run >= WARMUP) best = Math.min(best, time);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,57 @@
+package pack;
+
+import java.util.Arrays;
+
+// Замер параллельной детерминизации на 1, 4 и 16 потоках: время построения подмножеств
+// и проверка, что ДКА совпадает с однопоточным состояние в состояние.
+public class ParallelSubsetBenchmark {
+    private static final int[] THREADS = {1, 4, 16};
+    private static final int WARMUP = 2;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        String[][] corpus = {
+                // 2^15 подмножеств: n-й символ с конца
+                {"suffix-15", "(a|b)*.a.(a|b){14}"},
+                {"shuffle-x6", "((((((a.b)*)||(c.d))||((e|f)*))||(g.h))||((i.j)*))||(k|l)"},
+                {"union-shuffle", "(a.b.c)*||(a.c)*||(b|c)*.a.(a|b|c){4}"},
+        };
+        System.out.printf("Процессоров: %d%n", Runtime.getRuntime().availableProcessors());
+        for (String[] entry : corpus) {
+            NFA nfa = RegexParser.parseRegexToNFA(entry[1]);
+            CompiledDFA expected = NFAToDFAConverter.compile(nfa);
+            System.out.printf("%s: НКА %d состояний, ДКА %d состояний%n",
+                    entry[0], nfa.getStates().size(), expected.getStateCount());
+
+            long baseline = 0;
+            for (int threads : THREADS) {
+                CompiledDFA dfa = null;
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < WARMUP + RUNS; run++) {
+                    long start = System.nanoTime();
+                    dfa = NFAToDFAConverter.compile(nfa, threads);
+                    long time = System.nanoTime() - start;
+                    if (run >= WARMUP) best = Math.min(best, time);
+                }
+                if (!sameTable(expected, dfa)) {
+                    throw new IllegalStateException("DFA differs from sequential for " + entry[0] + " at " + threads + " threads");
+                }
+                if (threads == 1) baseline = best;
+                System.out.printf("  %2d потоков: %8.2f мс, ускорение %.2fx%n", threads, best / 1e6, (double) baseline / best);
+            }
+        }
+    }
+
+    private static boolean sameTable(CompiledDFA a, CompiledDFA b) {
+        if (a.getStateCount() != b.getStateCount() || a.getClassCount() != b.getClassCount()) {
+            return false;
+        }
+        for (int state = 0; state < a.getStateCount(); state++) {
+            if (a.isAccepting(state) != b.isAccepting(state)) return false;
+            for (int cls = 0; cls < a.getClassCount(); cls++) {
+                if (a.transition(state, cls) != b.transition(state, cls)) return false;
+            }
+        }
+        return Arrays.equals(a.getAlphabet().ranges(), b.getAlphabet().ranges());
+    }
+}
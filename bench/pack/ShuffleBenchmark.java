@@ -0,0 +1,68 @@
+package pack;
+
+// Замер построения вложенных shuffle (4–6 уровней): число состояний ленивого произведения
+// против |A|·|B| при полном построении, время построения НКА и детерминизации,
+// и для сравнения — ДКА из производных (DerivativeDFA) без промежуточного НКА.
+public class ShuffleBenchmark {
+    private static final String[] OPERANDS = {"(a.b)*", "c.d", "(e|f)*", "g.h", "(i.j)*", "k|l"};
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        for (int depth = 4; depth <= 6; depth++) {
+            String regex = nested(depth);
+
+            NFA nfa = null;
+            long buildTime = Long.MAX_VALUE;
+            for (int run = 0; run < WARMUP + RUNS; run++) {
+                long start = System.nanoTime();
+                nfa = RegexParser.parseRegexToNFA(regex);
+                long time = System.nanoTime() - start;
+                if (run >= WARMUP) buildTime = Math.min(buildTime, time);
+            }
+
+            CompiledDFA dfa = null;
+            long convertTime = Long.MAX_VALUE;
+            for (int run = 0; run < WARMUP + RUNS; run++) {
+                long start = System.nanoTime();
+                dfa = NFAToDFAConverter.compile(nfa);
+                long time = System.nanoTime() - start;
+                if (run >= WARMUP) convertTime = Math.min(convertTime, time);
+            }
+
+            CompiledDFA derived = null;
+            long deriveTime = Long.MAX_VALUE;
+            for (int run = 0; run < WARMUP + RUNS; run++) {
+                long start = System.nanoTime();
+                derived = DerivativeDFA.compile(regex);
+                long time = System.nanoTime() - start;
+                if (run >= WARMUP) deriveTime = Math.min(deriveTime, time);
+            }
+
+            System.out.printf("shuffle x%d: %s%n", depth, regex);
+            System.out.printf("  НКА: %d состояний (полное произведение: %d), построение %.2f мс%n",
+                    nfa.getStates().size(), eagerStates(depth), buildTime / 1e6);
+            System.out.printf("  ДКА: %d состояний, детерминизация %.2f мс%n",
+                    dfa.getStateCount(), convertTime / 1e6);
+            System.out.printf("  производные: %d состояний, %.2f мс (от разбора до таблицы)%n",
+                    derived.getStateCount(), deriveTime / 1e6);
+        }
+    }
+
+    private static String nested(int depth) {
+        StringBuilder regex = new StringBuilder("(" + OPERANDS[0] + ")");
+        for (int i = 1; i < depth; i++) {
+            regex.insert(0, "(").append("||(").append(OPERANDS[i]).append("))");
+        }
+        return regex.toString();
+    }
+
+    // Число состояний при построении всех пар |A|·|B| на каждом уровне
+    private static long eagerStates(int depth) {
+        long states = RegexParser.parseRegexToNFA(OPERANDS[0]).getStates().size();
+        for (int i = 1; i < depth; i++) {
+            states *= RegexParser.parseRegexToNFA(OPERANDS[i]).getStates().size();
+        }
+        return states;
+    }
+}
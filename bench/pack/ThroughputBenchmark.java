@@ -0,0 +1,79 @@
+package pack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Пропускная способность сопоставления одним общим неизменяемым автоматом из нескольких потоков.
+// Блокировок нет, поэтому рост должен быть близок к линейному до числа ядер.
+public class ThroughputBenchmark {
+    private static final String REGEX = "(a|b)*.a.(a|b).(a|b).(a|b)";
+    private static final long DURATION_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        Pattern pattern = Pattern.compile(REGEX);
+        String[] inputs = inputs(1024, 64);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Шаблон %s, ядер: %d%n", REGEX, cores);
+        run(pattern, inputs, 1); // прогрев
+
+        double single = 0;
+        for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+            double opsPerSecond = run(pattern, inputs, threads);
+            if (threads == 1) single = opsPerSecond;
+            System.out.printf("  потоков: %2d  %,.0f строк/с  ускорение %.2f%n",
+                    threads, opsPerSecond, opsPerSecond / single);
+        }
+    }
+
+    private static double run(Pattern pattern, String[] inputs, int threads) throws InterruptedException {
+        LongAdder matched = new LongAdder();
+        LongAdder total = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 131;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + DURATION_NANOS;
+                long count = 0;
+                long hits = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        if (pattern.matches(inputs[(offset + i) % inputs.length])) hits++;
+                    }
+                    count += 256;
+                }
+                total.add(count);
+                matched.add(hits);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return total.sum() * 1e9 / DURATION_NANOS;
+    }
+
+    private static String[] inputs(int count, int length) {
+        Random random = new Random(42);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sb.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            result[i] = sb.toString();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package pack;
+
+import java.util.*;
+
+// Разбиение символов на классы эквивалентности: символы одного класса ведут себя одинаково
+// во всём автомате, поэтому детерминизация и таблица переходов работают с классами, а не с символами.
+// Класс 0 — символы вне алфавита, остальные классы — наборы диапазонов символов.
+// Символ отображается в класс двухуровневой таблицей по BMP:
+// старший байт выбирает блок из 256 элементов, одинаковые блоки хранятся один раз.
+final class AlphabetMap {
+    static final int OTHER = 0;
+    private static final int BLOCK = 256;
+
+    // Диапазоны класса cls — пары (from, to) с номерами classStart[cls - 1] .. classStart[cls] - 1
+    private final char[] ranges;
+    private final int[] classStart;
+    // index[hi] — смещение блока в blocks для символов со старшим байтом hi
+    private final int[] index;
+    private final int[] blocks;
+
+    // classes.get(i) — упорядоченные непересекающиеся пары (from, to) класса i + 1
+    private AlphabetMap(List<char[]> classes) {
+        int total = 0;
+        for (char[] pairs : classes) {
+            total += pairs.length;
+        }
+        ranges = new char[total];
+        classStart = new int[classes.size() + 1];
+        // Содержимое блоков, затронутых диапазонами; остальные блоки целиком относятся к OTHER
+        int[][] content = new int[BLOCK][];
+        int offset = 0;
+        for (int cls = 0; cls < classes.size(); cls++) {
+            char[] pairs = classes.get(cls);
+            classStart[cls] = offset / 2;
+            System.arraycopy(pairs, 0, ranges, offset, pairs.length);
+            offset += pairs.length;
+            for (int r = 0; r < pairs.length; r += 2) {
+                for (int c = pairs[r]; c <= pairs[r + 1]; c = (c | 0xff) + 1) {
+                    int[] block = content[c >>> 8];
+                    if (block == null) {
+                        block = content[c >>> 8] = new int[BLOCK];
+                    }
+                    Arrays.fill(block, c & 0xff, Math.min(pairs[r + 1], c | 0xff) - (c & ~0xff) + 1, cls + 1);
+                }
+            }
+        }
+        classStart[classes.size()] = offset / 2;
+
+        index = new int[BLOCK];
+        List<int[]> distinct = new ArrayList<>();
+        distinct.add(new int[BLOCK]);
+        for (int hi = 0; hi < BLOCK; hi++) {
+            int found = 0;
+            if (content[hi] != null) {
+                found = -1;
+                for (int b = 0; b < distinct.size() && found < 0; b++) {
+                    if (Arrays.equals(distinct.get(b), content[hi])) {
+                        found = b;
+                    }
+                }
+                if (found < 0) {
+                    found = distinct.size();
+                    distinct.add(content[hi]);
+                }
+            }
+            index[hi] = found * BLOCK;
+        }
+        blocks = new int[distinct.size() * BLOCK];
+        for (int b = 0; b < distinct.size(); b++) {
+            System.arraycopy(distinct.get(b), 0, blocks, b * BLOCK, BLOCK);
+        }
+    }
+
+    // Восстановление из сериализованной формы (DFASerializer)
+    AlphabetMap(char[] ranges, int[] classStart, int[] index, int[] blocks) {
+        this.ranges = ranges;
+        this.classStart = classStart;
+        this.index = index;
+        this.blocks = blocks;
+    }
+
+    // Непересекающиеся интервалы [from[i], to[i]] с одинаковой сигнатурой (например, набором переходов
+    // во всём автомате) объединяются в класс; не покрытые интервалами символы относятся к OTHER
+    static AlphabetMap partition(char[] from, char[] to, long[][] signatures) {
+        Integer[] order = new Integer[from.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> from[i]));
+
+        Map<Signature, StringBuilder> groups = new LinkedHashMap<>();
+        for (int i : order) {
+            StringBuilder pairs = groups.computeIfAbsent(new Signature(signatures[i]), k -> new StringBuilder());
+            int last = pairs.length() - 1;
+            if (last > 0 && pairs.charAt(last) + 1 == from[i]) {
+                // Смежные интервалы одного класса сливаются
+                pairs.setCharAt(last, to[i]);
+            } else {
+                pairs.append(from[i]).append(to[i]);
+            }
+        }
+        List<char[]> classes = new ArrayList<>(groups.size());
+        for (StringBuilder pairs : groups.values()) {
+            classes.add(pairs.toString().toCharArray());
+        }
+        return new AlphabetMap(classes);
+    }
+
+    int classOf(char symbol) {
+        return blocks[index[symbol >>> 8] + (symbol & 0xff)];
+    }
+
+    int classCount() {
+        return classStart.length;
+    }
+
+    // Представитель класса — наименьший из его символов (для класса OTHER не определён)
+    char symbolOf(int cls) {
+        return ranges[2 * classStart[cls - 1]];
+    }
+
+    // Пары (from, to) диапазонов класса
+    char[] rangesOf(int cls) {
+        return Arrays.copyOfRange(ranges, 2 * classStart[cls - 1], 2 * classStart[cls]);
+    }
+
+    // Все символы класса по отдельности
+    char[] membersOf(int cls) {
+        StringBuilder members = new StringBuilder();
+        for (int r = 2 * classStart[cls - 1]; r < 2 * classStart[cls]; r += 2) {
+            for (int c = ranges[r]; c <= ranges[r + 1]; c++) {
+                members.append((char) c);
+            }
+        }
+        return members.toString().toCharArray();
+    }
+
+    long estimatedSize() {
+        return 48L + 2L * ranges.length + 4L * (classStart.length + index.length + blocks.length);
+    }
+
+    char[] ranges() {
+        return ranges.clone();
+    }
+
+    int[] classStarts() {
+        return classStart.clone();
+    }
+
+    int[] index() {
+        return index.clone();
+    }
+
+    int[] blocks() {
+        return blocks.clone();
+    }
+
+    // Класс для печати: один символ или перечисление диапазонов в скобках
+    String describe(int cls) {
+        int from = 2 * classStart[cls - 1];
+        int to = 2 * classStart[cls];
+        if (to - from == 2 && ranges[from] == ranges[from + 1]) {
+            return String.valueOf(ranges[from]);
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int r = from; r < to; r += 2) {
+            sb.append(new CharRange(ranges[r], ranges[r + 1]));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static final class Signature {
+        private final long[] value;
+        private final int hash;
+
+        Signature(long[] value) {
+            this.value = value;
+            this.hash = Arrays.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature && Arrays.equals(value, ((Signature) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
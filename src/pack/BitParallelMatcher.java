@@ -0,0 +1,179 @@
+package pack;
+
+import java.util.Arrays;
+
+// Прямая симуляция НКА без детерминизации: множество активных состояний — битовый массив.
+// Храним только «значимые» состояния (с переходами по символам или допускающие),
+// для каждого из них и каждого класса символов заранее вычислена маска переход + ε-замыкание.
+// Шаг по символу — выборки из таблиц по байтам фронта (как в Shift-And): 8·words выборок
+// по words слов, то есть O(m²/512) на символ для m значимых состояний. Если таблицы не
+// помещаются в MAX_CHUNK_TABLE, маски перебираются по активным состояниям — O(active·m/64).
+// При m <= 64 фронт помещается в один long. Память на символ не выделяется.
+public final class BitParallelMatcher {
+    private static final int MAX_CHUNK_TABLE = 1 << 17;
+
+    private final AlphabetMap alphabet;
+    private final int classCount;
+    private final int stateCount;
+    private final int words;
+    private final long[] startMask;
+    private final long[] acceptMask;
+    // step[(cls * stateCount + s) * words + w] — маска состояний после перехода из s по cls
+    private final long[] step;
+    // chunks[((cls * 8 * words + j) * 256 + v) * words + w] — объединение шагов по значению v
+    // байта j фронта, или null, если таблица слишком велика
+    private final long[] chunks;
+
+    public BitParallelMatcher(NFA nfa) {
+        IntNFA source = new IntNFA(nfa);
+        alphabet = source.alphabet;
+        classCount = alphabet.classCount();
+
+        int[] index = new int[source.stateCount];
+        int count = 0;
+        for (int s = 0; s < source.stateCount; s++) {
+            boolean important = source.edgeOffset[s] < source.edgeOffset[s + 1]
+                    || (source.accepting[s >>> 6] & (1L << s)) != 0;
+            index[s] = important ? count++ : -1;
+        }
+        stateCount = count;
+        words = Math.max((count + 63) >>> 6, 1);
+
+        startMask = closureMask(source, index, source.start);
+        acceptMask = new long[words];
+        for (int s = 0; s < source.stateCount; s++) {
+            if (index[s] >= 0 && (source.accepting[s >>> 6] & (1L << s)) != 0) {
+                acceptMask[index[s] >>> 6] |= 1L << index[s];
+            }
+        }
+
+        step = new long[classCount * stateCount * words];
+        for (int s = 0; s < source.stateCount; s++) {
+            if (index[s] < 0) continue;
+            for (int e = source.edgeOffset[s]; e < source.edgeOffset[s + 1]; e++) {
+                long[] target = closureMask(source, index, source.edgeTarget[e]);
+                int row = (source.edgeClass[e] * stateCount + index[s]) * words;
+                for (int w = 0; w < words; w++) {
+                    step[row + w] |= target[w];
+                }
+            }
+        }
+
+        chunks = (long) classCount * 8 * 256 * words * words <= MAX_CHUNK_TABLE ? buildChunks() : null;
+    }
+
+    public boolean matches(CharSequence input) {
+        if (words == 1) {
+            return matchesSingleWord(input);
+        }
+        long[] current = startMask.clone();
+        long[] next = new long[words];
+        for (int i = 0, n = input.length(); i < n; i++) {
+            int cls = alphabet.classOf(input.charAt(i));
+            if (cls == AlphabetMap.OTHER) {
+                return false;
+            }
+            Arrays.fill(next, 0);
+            if (chunks != null) {
+                int base = cls * 8 * words * 256;
+                for (int w = 0; w < words; w++) {
+                    int j = w * 8;
+                    for (long rest = current[w]; rest != 0; rest >>>= 8, j++) {
+                        int row = (base + j * 256 + (int) (rest & 0xff)) * words;
+                        for (int v = 0; v < words; v++) {
+                            next[v] |= chunks[row + v];
+                        }
+                    }
+                }
+            } else {
+                int base = cls * stateCount;
+                for (int w = 0; w < words; w++) {
+                    for (long rest = current[w]; rest != 0; rest &= rest - 1) {
+                        int row = (base + (w << 6) + Long.numberOfTrailingZeros(rest)) * words;
+                        for (int v = 0; v < words; v++) {
+                            next[v] |= step[row + v];
+                        }
+                    }
+                }
+            }
+            boolean any = false;
+            for (int w = 0; w < words && !any; w++) {
+                any = next[w] != 0;
+            }
+            if (!any) {
+                return false;
+            }
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+        for (int w = 0; w < words; w++) {
+            if ((current[w] & acceptMask[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    boolean hasChunkTables() {
+        return chunks != null;
+    }
+
+    private boolean matchesSingleWord(CharSequence input) {
+        long current = startMask[0];
+        for (int i = 0, n = input.length(); i < n && current != 0; i++) {
+            int cls = alphabet.classOf(input.charAt(i));
+            if (cls == AlphabetMap.OTHER) {
+                return false;
+            }
+            long next = 0;
+            if (chunks != null) {
+                int base = cls * 8 * 256;
+                for (long rest = current; rest != 0; rest >>>= 8, base += 256) {
+                    next |= chunks[base + (int) (rest & 0xff)];
+                }
+            } else {
+                int base = cls * stateCount;
+                for (long rest = current; rest != 0; rest &= rest - 1) {
+                    next |= step[base + Long.numberOfTrailingZeros(rest)];
+                }
+            }
+            current = next;
+        }
+        return (current & acceptMask[0]) != 0;
+    }
+
+    private long[] buildChunks() {
+        int chunkCount = 8 * words;
+        long[] table = new long[classCount * chunkCount * 256 * words];
+        for (int cls = 0; cls < classCount; cls++) {
+            for (int j = 0; j < chunkCount; j++) {
+                int base = (cls * chunkCount + j) * 256;
+                for (int v = 1; v < 256; v++) {
+                    int s = j * 8 + Integer.numberOfTrailingZeros(v);
+                    int row = (base + v) * words;
+                    int previous = (base + (v & (v - 1))) * words;
+                    int source = (cls * stateCount + s) * words;
+                    for (int w = 0; w < words; w++) {
+                        table[row + w] = table[previous + w] | (s < stateCount ? step[source + w] : 0);
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    // ε-замыкание состояния НКА, ограниченное значимыми состояниями
+    private long[] closureMask(IntNFA source, int[] index, int state) {
+        long[] mask = new long[words];
+        for (int s : source.closure[state]) {
+            int i = index[s];
+            if (i >= 0) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,460 @@
+package pack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.function.Predicate;
+
+// Компиляция ДКА в байт-код: скрытый класс (Lookup.defineHiddenClass), реализующий
+// Predicate<CharSequence>. Метод test — цикл по символам с tableswitch по номеру состояния;
+// в ветке каждого состояния переходы записаны tableswitch по символу (или сравнениями с границами
+// широких диапазонов), так что таблица переходов не читается, а JIT видит константы шаблона.
+// Крупные автоматы остаются табличными: больше MAX_STATES состояний или слишком длинный код.
+public final class BytecodeDFA {
+    static final int MAX_STATES = 256;
+    // HotSpot не компилирует методы длиннее 8000 байт байт-кода (DontCompileHugeMethods)
+    static final int MAX_CODE_LENGTH = 8000;
+    // Наибольший размах символов состояния, при котором переходы записываются через tableswitch
+    static final int MAX_SWITCH_SPAN = 128;
+
+    private static final String CLASS_NAME = "pack/GeneratedDFAMatcher";
+
+    // Локальные переменные test: this, аргумент, вход, длина, позиция, состояние, символ
+    private static final int INPUT = 2;
+    private static final int LENGTH = 3;
+    private static final int POSITION = 4;
+    private static final int STATE = 5;
+    private static final int CHAR = 6;
+    private static final int LOCALS = 7;
+
+    private BytecodeDFA() {
+    }
+
+    // Сгенерированный matcher или dfa::matches, если автомат не проходит по ограничениям
+    public static Predicate<CharSequence> compile(CompiledDFA dfa) {
+        byte[] bytes = generate(dfa);
+        if (bytes == null) {
+            return dfa::matches;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            @SuppressWarnings("unchecked")
+            Predicate<CharSequence> matcher = (Predicate<CharSequence>) lookup
+                    .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            return matcher;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot define generated matcher", e);
+        }
+    }
+
+    public static Predicate<CharSequence> compile(DFA dfa) {
+        return compile(DFAMinimizer.minimize(dfa.compile()));
+    }
+
+    // true, если matcher — сгенерированный класс, а не табличный запасной вариант
+    public static boolean isGenerated(Predicate<CharSequence> matcher) {
+        // Лямбды тоже скрытые классы, поэтому проверяется имя
+        return matcher.getClass().getName().startsWith(CLASS_NAME.replace('/', '.'));
+    }
+
+    // Файл класса или null, если автомат слишком велик
+    static byte[] generate(CompiledDFA dfa) {
+        int stateCount = dfa.getStateCount();
+        if (stateCount > MAX_STATES) {
+            return null;
+        }
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int objectClass = pool.classRef("java/lang/Object");
+        int predicateClass = pool.classRef("java/util/function/Predicate");
+        int charSequenceClass = pool.classRef("java/lang/CharSequence");
+        int objectInit = pool.memberRef(10, objectClass, "<init>", "()V");
+        int lengthMethod = pool.memberRef(11, charSequenceClass, "length", "()I");
+        int charAtMethod = pool.memberRef(11, charSequenceClass, "charAt", "(I)C");
+
+        Code code = new Code(pool);
+        // Пролог: вход приводится к CharSequence, все локальные переменные инициализируются
+        code.op(0x2b).op(0xc0).u2(charSequenceClass).store(INPUT, 0x3a);   // aload_1 checkcast astore
+        code.load(INPUT, 0x19).op(0xb9).u2(lengthMethod).u1(1).u1(0).store(LENGTH, 0x36);
+        code.push(0).store(POSITION, 0x36);
+        code.push(dfa.getStartState()).store(STATE, 0x36);
+        code.push(0).store(CHAR, 0x36);
+
+        int loop = code.label();
+        int end = code.label();
+        int accept = code.label();
+        int reject = code.label();
+        int[] states = new int[stateCount];
+        int[] go = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            states[s] = code.label();
+            go[s] = code.label();
+        }
+
+        // Цикл: конец входа — проверка допуска, иначе очередной символ и переход по состоянию
+        code.bind(loop);
+        code.load(POSITION, 0x15).load(LENGTH, 0x15).jump(0xa2, end);              // if_icmpge
+        code.load(INPUT, 0x19).load(POSITION, 0x15).op(0xb9).u2(charAtMethod).u1(2).u1(0).store(CHAR, 0x36);
+        code.op(0x84).u1(POSITION).u1(1);                                            // iinc
+        code.load(STATE, 0x15).tableSwitch(0, reject, states);
+
+        AlphabetMap alphabet = dfa.getAlphabet();
+        for (int s = 0; s < stateCount; s++) {
+            code.bind(states[s]);
+            int other = dfa.transition(s, AlphabetMap.OTHER);
+            int otherLabel = other == CompiledDFA.DEAD ? reject : go[other];
+            // Диапазоны классов, ведущих не туда же, куда OTHER, по возрастанию; смежные с общей целью сливаются
+            List<int[]> ranges = new ArrayList<>();
+            for (int cls = AlphabetMap.OTHER + 1; cls < dfa.getClassCount(); cls++) {
+                int target = dfa.transition(s, cls);
+                if (target == other) continue;
+                char[] pairs = alphabet.rangesOf(cls);
+                for (int r = 0; r < pairs.length; r += 2) {
+                    ranges.add(new int[]{pairs[r], pairs[r + 1], target});
+                }
+            }
+            ranges.sort(Comparator.comparingInt(range -> range[0]));
+            List<int[]> merged = new ArrayList<>();
+            for (int[] range : ranges) {
+                int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && last[1] + 1 == range[0] && last[2] == range[2]) {
+                    last[1] = range[1];
+                } else {
+                    merged.add(range);
+                }
+            }
+            if (merged.isEmpty()) {
+                code.jump(0xa7, otherLabel);                                             // goto
+                continue;
+            }
+            int low = merged.get(0)[0];
+            int high = merged.get(merged.size() - 1)[1];
+            if (high - low < MAX_SWITCH_SPAN) {
+                // tableswitch по символу: C2 сам сводит его к дереву сравнений или таблице переходов
+                int[] cases = new int[high - low + 1];
+                Arrays.fill(cases, otherLabel);
+                for (int[] range : merged) {
+                    Arrays.fill(cases, range[0] - low, range[1] - low + 1, range[2] == CompiledDFA.DEAD ? reject : go[range[2]]);
+                }
+                code.load(CHAR, 0x15).tableSwitch(low, otherLabel, cases);
+                continue;
+            }
+            // Широкие диапазоны — сравнения с границами по возрастанию: символ меньше нижней
+            // границы не попадёт и в следующие
+            for (int[] range : merged) {
+                int target = range[2] == CompiledDFA.DEAD ? reject : go[range[2]];
+                code.load(CHAR, 0x15).push(range[0]).jump(0xa1, otherLabel);             // if_icmplt
+                code.load(CHAR, 0x15).push(range[1]).jump(0xa4, target);                 // if_icmple
+            }
+            code.jump(0xa7, otherLabel);                                                 // goto
+        }
+        for (int s = 0; s < stateCount; s++) {
+            code.bind(go[s]);
+            code.push(s).store(STATE, 0x36).jump(0xa7, loop);
+        }
+
+        code.bind(end);
+        int[] results = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            results[s] = dfa.isAccepting(s) ? accept : reject;
+        }
+        code.load(STATE, 0x15).tableSwitch(0, reject, results);
+        code.bind(accept);
+        code.push(1).op(0xac);                                                           // ireturn
+        code.bind(reject);
+        code.push(0).op(0xac);
+
+        byte[] body = code.finish();
+        if (body == null || body.length > MAX_CODE_LENGTH) {
+            return null;
+        }
+        return classFile(pool, thisClass, objectClass, predicateClass, objectInit, body, code.frames(thisClass, objectClass, charSequenceClass));
+    }
+
+    private static byte[] classFile(ConstantPool pool, int thisClass, int objectClass, int predicateClass,
+                                    int objectInit, byte[] testCode, byte[] frames) {
+        int codeName = pool.utf8("Code");
+        int framesName = pool.utf8("StackMapTable");
+        int initName = pool.utf8("<init>");
+        int initType = pool.utf8("()V");
+        int testName = pool.utf8("test");
+        int testType = pool.utf8("(Ljava/lang/Object;)Z");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(61);
+            pool.write(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020);   // public final super
+            out.writeShort(thisClass);
+            out.writeShort(objectClass);
+            out.writeShort(1);
+            out.writeShort(predicateClass);
+            out.writeShort(0);                          // полей нет
+            out.writeShort(2);
+
+            // public <init>() { super(); }
+            out.writeShort(0x0001);
+            out.writeShort(initName);
+            out.writeShort(initType);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + 5);
+            out.writeShort(1);
+            out.writeShort(1);
+            out.writeInt(5);
+            out.write(new byte[]{0x2a, (byte) 0xb7, (byte) (objectInit >> 8), (byte) objectInit, (byte) 0xb1});
+            out.writeShort(0);
+            out.writeShort(0);
+
+            // public boolean test(Object)
+            out.writeShort(0x0001);
+            out.writeShort(testName);
+            out.writeShort(testType);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + testCode.length + 6 + frames.length);
+            out.writeShort(2);
+            out.writeShort(LOCALS);
+            out.writeInt(testCode.length);
+            out.write(testCode);
+            out.writeShort(0);
+            out.writeShort(1);
+            out.writeShort(framesName);
+            out.writeInt(frames.length);
+            out.write(frames);
+
+            out.writeShort(0);                          // атрибутов класса нет
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Пул констант: записи Utf8, Class, NameAndType, Methodref/InterfaceMethodref и Integer без повторов
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, () -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int memberRef(int tag, int owner, String name, String type) {
+            int nameIndex = utf8(name);
+            int typeIndex = utf8(type);
+            int nameAndType = entry("N" + name + type, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(typeIndex);
+            });
+            return entry("M" + tag + ":" + owner + ":" + nameAndType, () -> {
+                out.writeByte(tag);
+                out.writeShort(owner);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int integer(int value) {
+            return entry("I" + value, () -> {
+                out.writeByte(3);
+                out.writeInt(value);
+            });
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+
+        private int entry(String key, Writer writer) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            entries.put(key, count);
+            return count++;
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+
+    // Байт-код метода с метками: переходы вперёд дописываются в finish(). На всех метках
+    // одинаковые локальные переменные и пустой стек, для них строятся кадры StackMapTable
+    private static final class Code {
+        private final ConstantPool pool;
+        private byte[] code = new byte[256];
+        private int length;
+        private final List<Integer> labels = new ArrayList<>();
+        // Тройки (позиция смещения, позиция инструкции, метка); ширина смещения — 2 или 4 байта
+        private final List<int[]> fixups = new ArrayList<>();
+
+        Code(ConstantPool pool) {
+            this.pool = pool;
+        }
+
+        int label() {
+            labels.add(-1);
+            return labels.size() - 1;
+        }
+
+        void bind(int label) {
+            labels.set(label, length);
+        }
+
+        Code op(int opcode) {
+            return u1(opcode);
+        }
+
+        Code u1(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) value;
+            return this;
+        }
+
+        Code u2(int value) {
+            return u1(value >> 8).u1(value);
+        }
+
+        Code u4(int value) {
+            return u2(value >> 16).u2(value);
+        }
+
+        Code load(int local, int opcode) {
+            return op(opcode).u1(local);
+        }
+
+        Code store(int local, int opcode) {
+            return op(opcode).u1(local);
+        }
+
+        Code push(int value) {
+            if (value >= -1 && value <= 5) {
+                return op(0x03 + value);                       // iconst_<n>
+            }
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                return op(0x10).u1(value);                     // bipush
+            }
+            if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return op(0x11).u2(value);                     // sipush
+            }
+            int index = pool.integer(value);
+            return index < 256 ? op(0x12).u1(index) : op(0x13).u2(index);   // ldc, ldc_w
+        }
+
+        Code jump(int opcode, int label) {
+            int at = length;
+            op(opcode);
+            fixups.add(new int[]{length, at, label, 2});
+            return u2(0);
+        }
+
+        Code tableSwitch(int low, int defaultLabel, int[] cases) {
+            int at = length;
+            op(0xaa);
+            while (length % 4 != 0) {
+                u1(0);
+            }
+            fixups.add(new int[]{length, at, defaultLabel, 4});
+            u4(0);
+            u4(low);
+            u4(low + cases.length - 1);
+            for (int label : cases) {
+                fixups.add(new int[]{length, at, label, 4});
+                u4(0);
+            }
+            return this;
+        }
+
+        // Готовый байт-код или null, если смещение не помещается в 16 бит
+        byte[] finish() {
+            for (int[] fixup : fixups) {
+                int offset = labels.get(fixup[2]) - fixup[1];
+                if (fixup[3] == 2) {
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        return null;
+                    }
+                    code[fixup[0]] = (byte) (offset >> 8);
+                    code[fixup[0] + 1] = (byte) offset;
+                } else {
+                    for (int b = 0; b < 4; b++) {
+                        code[fixup[0] + b] = (byte) (offset >> (24 - 8 * b));
+                    }
+                }
+            }
+            return Arrays.copyOf(code, length);
+        }
+
+        // Первый кадр полный (локальные переменные test), остальные — same_frame
+        byte[] frames(int thisClass, int objectClass, int charSequenceClass) {
+            // Кадр нужен и после безусловного перехода, поэтому он ставится на каждую метку
+            TreeSet<Integer> targets = new TreeSet<>();
+            for (int position : labels) {
+                if (position >= 0) {
+                    targets.add(position);
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeShort(targets.size());
+                int previous = -1;
+                for (int target : targets) {
+                    int delta = previous < 0 ? target : target - previous - 1;
+                    if (previous < 0) {
+                        out.writeByte(255);                    // full_frame
+                        out.writeShort(delta);
+                        out.writeShort(LOCALS);
+                        writeObject(out, thisClass);
+                        writeObject(out, objectClass);
+                        writeObject(out, charSequenceClass);
+                        for (int i = LENGTH; i < LOCALS; i++) {
+                            out.writeByte(1);                  // int
+                        }
+                        out.writeShort(0);
+                    } else if (delta < 64) {
+                        out.writeByte(delta);                  // same_frame
+                    } else {
+                        out.writeByte(251);                    // same_frame_extended
+                        out.writeShort(delta);
+                    }
+                    previous = target;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static void writeObject(DataOutputStream out, int classIndex) throws IOException {
+            out.writeByte(7);
+            out.writeShort(classIndex);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package pack;
+
+// Диапазон символов [from, to] — метка перехода НКА вместо отдельного перехода на каждый символ
+public record CharRange(char from, char to) {
+
+    public CharRange {
+        if (from > to) {
+            throw new IllegalArgumentException("Invalid range: " + from + "-" + to);
+        }
+    }
+
+    public boolean contains(char c) {
+        return from <= c && c <= to;
+    }
+
+    @Override
+    public String toString() {
+        return from == to ? show(from) : show(from) + "-" + show(to);
+    }
+
+    private static String show(char c) {
+        return c < 0x20 || c >= 0x7f && !Character.isLetterOrDigit(c) ? String.format("\\u%04x", (int) c) : String.valueOf(c);
+    }
+}
@@ -0,0 +1,345 @@
+package pack;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Компактная форма ДКА: состояния 0..n-1, плотная таблица переходов int[] и BitSet допускающих состояний.
+// Сопоставление не выделяет память и не вычисляет хеши.
+public final class CompiledDFA {
+    static final int DEAD = -1;
+    // Число входов, одновременно проходящих таблицу в matchAll (цикл развёрнут под это значение)
+    static final int LANES = 4;
+    // Наименьшая доля пакета на поток в параллельном matchAll (кратна 64 — слову результата)
+    private static final int MIN_CHUNK = 4096;
+
+    private final AlphabetMap alphabet;
+    private final int stateCount;
+    private final int classCount;
+    private final int start;
+    // next[row + cls] — смещение строки следующего состояния (state * classCount) или DEAD
+    private final int[] next;
+    private final BitSet accepting;
+    // Классы для байтов ASCII; байты >= 0x80 начинают последовательность UTF-8 и декодируются на месте
+    private final int[] byteClass = new int[128];
+
+    // transitions[state * classCount + cls] — номер следующего состояния или DEAD
+    CompiledDFA(AlphabetMap alphabet, int stateCount, int start, int[] transitions, BitSet accepting) {
+        this.alphabet = alphabet;
+        this.stateCount = stateCount;
+        this.classCount = alphabet.classCount();
+        this.start = start * classCount;
+        this.next = new int[stateCount * classCount];
+        for (int i = 0; i < next.length; i++) {
+            int to = transitions[i];
+            next[i] = to == DEAD ? DEAD : to * classCount;
+        }
+        this.accepting = (BitSet) accepting.clone();
+        for (int b = 0; b < byteClass.length; b++) {
+            byteClass[b] = alphabet.classOf((char) b);
+        }
+        RegexListener listener = Instrumentation.listener;
+        if (listener != null) {
+            listener.dfaCompiled(stateCount, classCount, estimatedSize());
+        }
+    }
+
+    public boolean matches(CharSequence input) {
+        RegexListener listener = Instrumentation.listener;
+        if (listener == null) {
+            int state = run(input);
+            return state != DEAD && accepting.get(state);
+        }
+        long begin = System.nanoTime();
+        int state = run(input);
+        boolean result = state != DEAD && accepting.get(state);
+        listener.matched(input.length(), result, System.nanoTime() - begin);
+        return result;
+    }
+
+    // out[i] = matches(inputs[i]) для всех i. Входы идут через таблицу по LANES штук в ногу:
+    // переходы разных входов не зависят друг от друга, и процессор ждёт их загрузки одновременно,
+    // а не по очереди, как в цикле из matches
+    public void matchAll(CharSequence[] inputs, BitSet out) {
+        RegexListener listener = Instrumentation.listener;
+        long begin = listener == null ? 0 : System.nanoTime();
+        long[] words = new long[(inputs.length + 63) >>> 6];
+        matchRange(inputs, 0, inputs.length, words);
+        store(words, inputs.length, out);
+        if (listener != null) {
+            report(listener, inputs, words, System.nanoTime() - begin);
+        }
+    }
+
+    public void matchAll(List<? extends CharSequence> inputs, BitSet out) {
+        matchAll(inputs.toArray(new CharSequence[0]), out);
+    }
+
+    // То же, с разбиением пакета между потоками pool
+    public void matchAll(CharSequence[] inputs, BitSet out, ForkJoinPool pool) {
+        RegexListener listener = Instrumentation.listener;
+        long begin = listener == null ? 0 : System.nanoTime();
+        long[] words = new long[(inputs.length + 63) >>> 6];
+        int chunk = Math.max(MIN_CHUNK, (inputs.length / (pool.getParallelism() * 4) + 63) & ~63);
+        pool.invoke(new Batch(inputs, 0, inputs.length, chunk, words));
+        store(words, inputs.length, out);
+        if (listener != null) {
+            report(listener, inputs, words, System.nanoTime() - begin);
+        }
+    }
+
+    // По событию matched на каждый вход пакета, как от matches. Входы идут вперемешку, поэтому время
+    // пакета делится между ними поровну; в сумме получается время всего пакета
+    private static void report(RegexListener listener, CharSequence[] inputs, long[] words, long nanos) {
+        for (int i = 0; i < inputs.length; i++) {
+            boolean result = (words[i >>> 6] & (1L << i)) != 0;
+            listener.matched(inputs[i].length(), result, nanos / inputs.length + (i < nanos % inputs.length ? 1 : 0));
+        }
+    }
+
+    private static void store(long[] words, int count, BitSet out) {
+        out.clear(0, count);
+        out.or(BitSet.valueOf(words));
+    }
+
+    // Совпавшие входы из [from, to) отмечаются битами в words. Четвёрка входов идёт в ногу
+    // на длину самого короткого из них; состояния — в локальных переменных, а не в массивах,
+    // чтобы JIT держал их в регистрах. Хвосты и остаток пакета дочитываются по одному
+    private void matchRange(CharSequence[] inputs, int from, int to, long[] words) {
+        int[] next = this.next;
+        AlphabetMap alphabet = this.alphabet;
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            CharSequence s0 = inputs[i];
+            CharSequence s1 = inputs[i + 1];
+            CharSequence s2 = inputs[i + 2];
+            CharSequence s3 = inputs[i + 3];
+            int n = Math.min(Math.min(s0.length(), s1.length()), Math.min(s2.length(), s3.length()));
+            int r0 = start;
+            int r1 = start;
+            int r2 = start;
+            int r3 = start;
+            int p = 0;
+            while (p < n) {
+                r0 = next[r0 + alphabet.classOf(s0.charAt(p))];
+                r1 = next[r1 + alphabet.classOf(s1.charAt(p))];
+                r2 = next[r2 + alphabet.classOf(s2.charAt(p))];
+                r3 = next[r3 + alphabet.classOf(s3.charAt(p))];
+                p++;
+                if ((r0 | r1 | r2 | r3) < 0) break;
+            }
+            mark(words, i, feed(r0, s0, p, s0.length()));
+            mark(words, i + 1, feed(r1, s1, p, s1.length()));
+            mark(words, i + 2, feed(r2, s2, p, s2.length()));
+            mark(words, i + 3, feed(r3, s3, p, s3.length()));
+        }
+        for (; i < to; i++) {
+            mark(words, i, feed(start, inputs[i], 0, inputs[i].length()));
+        }
+    }
+
+    private void mark(long[] words, int index, int row) {
+        if (isAcceptingRow(row)) {
+            words[index >>> 6] |= 1L << index;
+        }
+    }
+
+    // Часть пакета для ForkJoinPool; границы частей кратны 64, поэтому части пишут в разные слова words.
+    // ForkJoin-задачи не сериализуются, Serializable достаётся от RecursiveAction
+    @SuppressWarnings("serial")
+    private final class Batch extends RecursiveAction {
+        private final CharSequence[] inputs;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final long[] words;
+
+        Batch(CharSequence[] inputs, int from, int to, int chunk, long[] words) {
+            this.inputs = inputs;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.words = words;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                matchRange(inputs, from, to, words);
+                return;
+            }
+            int middle = from + Math.max(1, (to - from) / chunk / 2) * chunk;
+            invokeAll(new Batch(inputs, from, middle, chunk, words), new Batch(inputs, middle, to, chunk, words));
+        }
+    }
+
+    // Состояние после чтения всего входа или DEAD
+    int run(CharSequence input) {
+        int[] next = this.next;
+        AlphabetMap alphabet = this.alphabet;
+        int row = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            row = next[row + alphabet.classOf(input.charAt(i))];
+            if (row < 0) {
+                return DEAD;
+            }
+        }
+        return row / classCount;
+    }
+
+    // Продолжение разбора с позиции row (смещение строки состояния); возвращает новое смещение или DEAD
+    int feed(int row, char[] chars, int from, int to) {
+        int[] next = this.next;
+        AlphabetMap alphabet = this.alphabet;
+        for (int i = from; i < to && row >= 0; i++) {
+            row = next[row + alphabet.classOf(chars[i])];
+        }
+        return row;
+    }
+
+    int feed(int row, CharSequence chars, int from, int to) {
+        int[] next = this.next;
+        AlphabetMap alphabet = this.alphabet;
+        for (int i = from; i < to && row >= 0; i++) {
+            row = next[row + alphabet.classOf(chars.charAt(i))];
+        }
+        return row;
+    }
+
+    // Разбор байтов UTF-8 bytes[from, to) без декодирования в String. Некорректная или оборванная
+    // последовательность заменяется одним U+FFFD, байт, на котором она оборвалась, разбирается заново
+    int feedUtf8(int row, ByteBuffer bytes, int from, int to) {
+        int[] next = this.next;
+        int[] byteClass = this.byteClass;
+        int i = from;
+        while (i < to && row >= 0) {
+            int b = bytes.get(i++);
+            if (b >= 0) {
+                row = next[row + byteClass[b]];
+                continue;
+            }
+            // Многобайтовая последовательность
+            int lead = b & 0xff;
+            int length = utf8Length(lead);
+            int cp = lead & (0x7f >> length);
+            int end = Math.min(i + length - 1, to);
+            int first = i;
+            while (i < end) {
+                int c = bytes.get(i) & 0xff;
+                if (i == first ? !utf8Second(lead, c) : (c & 0xc0) != 0x80) break;
+                cp = (cp << 6) | (c & 0x3f);
+                i++;
+            }
+            if (length == 0 || i - first < length - 1 || isSurrogate(cp)) {
+                row = feed(row, '\uFFFD');
+            } else if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                row = feed(row, (char) cp);
+            } else {
+                row = feed(row, Character.highSurrogate(cp));
+                if (row >= 0) {
+                    row = feed(row, Character.lowSurrogate(cp));
+                }
+            }
+        }
+        return row;
+    }
+
+    // Длина последовательности UTF-8 по первому байту или 0, если он не может её начинать (80..C1, F5..FF)
+    static int utf8Length(int lead) {
+        return lead < 0x80 ? 1 : lead < 0xc2 ? 0 : lead < 0xe0 ? 2 : lead < 0xf0 ? 3 : lead < 0xf5 ? 4 : 0;
+    }
+
+    // Допустимый второй байт после lead: суженные диапазоны исключают избыточно длинные формы (E0, F0)
+    // и значения больше U+10FFFF (F4 90..). Суррогат (ED A0..BF) дочитывается и заменяется целиком —
+    // так же U+FFFD расставляет CharsetDecoder
+    static boolean utf8Second(int lead, int b) {
+        int low = lead == 0xe0 ? 0xa0 : lead == 0xf0 ? 0x90 : 0x80;
+        int high = lead == 0xf4 ? 0x8f : 0xbf;
+        return b >= low && b <= high;
+    }
+
+    static boolean isSurrogate(int cp) {
+        return cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE;
+    }
+
+    int feed(int row, char symbol) {
+        return next[row + alphabet.classOf(symbol)];
+    }
+
+    // Конец самого длинного совпадения, начинающегося в from, или -1
+    int longestMatch(CharSequence input, int from) {
+        int[] next = this.next;
+        AlphabetMap alphabet = this.alphabet;
+        int row = start;
+        int end = accepting.get(row / classCount) ? from : -1;
+        for (int i = from, n = input.length(); i < n; i++) {
+            row = next[row + alphabet.classOf(input.charAt(i))];
+            if (row < 0) {
+                break;
+            }
+            if (accepting.get(row / classCount)) {
+                end = i + 1;
+            }
+        }
+        return end;
+    }
+
+    int startRow() {
+        return start;
+    }
+
+    boolean isAcceptingRow(int row) {
+        return row >= 0 && accepting.get(row / classCount);
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    // Приблизительный объём памяти в байтах (таблица, классы символов, допускающие состояния)
+    public long estimatedSize() {
+        return 64L + 4L * next.length + alphabet.estimatedSize() + accepting.size() / 8;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    AlphabetMap getAlphabet() {
+        return alphabet;
+    }
+
+    int getStartState() {
+        return start / classCount;
+    }
+
+    int transition(int state, int cls) {
+        int row = next[state * classCount + cls];
+        return row == DEAD ? DEAD : row / classCount;
+    }
+
+    boolean isAccepting(int state) {
+        return accepting.get(state);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Start: ").append(getStartState()).append("\nAccept: ").append(accepting).append("\nTransitions:");
+        for (int state = 0; state < stateCount; state++) {
+            sb.append('\n').append(state).append(" -> {");
+            String sep = "";
+            for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                int to = transition(state, cls);
+                if (to != DEAD) {
+                    sb.append(sep).append(alphabet.describe(cls)).append('=').append(to);
+                    sep = ", ";
+                }
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+}
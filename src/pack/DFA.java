@@ -4,12 +4,86 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 
+// ДКА собирается через методы пакета (конвертер, минимизатор), затем замораживается вызовом freeze():
+// все коллекции заменяются неизменяемыми копиями, и объект можно разделять между потоками без блокировок.
+// Поля не final, поэтому сам объект нужно публиковать через happens-before: final или volatile поле,
+// потокобезопасную коллекцию, запуск потока после freeze(). Поток, увидевший isFrozen() == true,
+// видит и замороженные коллекции: frozen — volatile и записывается последним.
 public class DFA {
-    Set<Character> alphabet = new HashSet<>();
-    Set<Set<Integer>> states = new HashSet<>();
-    Set<Integer> startState;
-    Set<Set<Integer>> acceptStates = new HashSet<>();
-    Map<Set<Integer>, Map<Character, Set<Integer>>> transitionTable = new HashMap<>();
+    private Set<Character> alphabet = new HashSet<>();
+    private Set<Set<Integer>> states = new HashSet<>();
+    private Set<Integer> startState;
+    private Set<Set<Integer>> acceptStates = new HashSet<>();
+    private Map<Set<Integer>, Map<Character, Set<Integer>>> transitionTable = new HashMap<>();
+    private volatile boolean frozen;
+
+    void addSymbol(char symbol) {
+        checkNotFrozen();
+        alphabet.add(symbol);
+    }
+
+    void addState(Set<Integer> state) {
+        checkNotFrozen();
+        states.add(state);
+    }
+
+    void setStartState(Set<Integer> state) {
+        checkNotFrozen();
+        startState = state;
+        states.add(state);
+    }
+
+    void addAcceptState(Set<Integer> state) {
+        checkNotFrozen();
+        acceptStates.add(state);
+    }
+
+    void addTransition(Set<Integer> from, char symbol, Set<Integer> to) {
+        checkNotFrozen();
+        transitionTable.computeIfAbsent(from, k -> new HashMap<>()).put(symbol, to);
+    }
+
+    public DFA freeze() {
+        if (frozen) {
+            return this;
+        }
+        // Одно неизменяемое множество на каждое состояние, чтобы ключи и значения таблицы совпадали
+        Map<Set<Integer>, Set<Integer>> frozenStates = new HashMap<>();
+        for (Set<Integer> state : states) {
+            frozenStates.put(state, Collections.unmodifiableSet(new TreeSet<>(state)));
+        }
+
+        Map<Set<Integer>, Map<Character, Set<Integer>>> table = new LinkedHashMap<>();
+        for (Map.Entry<Set<Integer>, Map<Character, Set<Integer>>> entry : transitionTable.entrySet()) {
+            Map<Character, Set<Integer>> row = new LinkedHashMap<>();
+            for (Map.Entry<Character, Set<Integer>> transition : entry.getValue().entrySet()) {
+                row.put(transition.getKey(), frozenStates.get(transition.getValue()));
+            }
+            table.put(frozenStates.get(entry.getKey()), Collections.unmodifiableMap(row));
+        }
+        Set<Set<Integer>> accept = new LinkedHashSet<>();
+        for (Set<Integer> state : acceptStates) {
+            accept.add(frozenStates.get(state));
+        }
+
+        alphabet = Collections.unmodifiableSet(new LinkedHashSet<>(alphabet));
+        states = Collections.unmodifiableSet(new LinkedHashSet<>(frozenStates.values()));
+        startState = frozenStates.get(startState);
+        acceptStates = Collections.unmodifiableSet(accept);
+        transitionTable = Collections.unmodifiableMap(table);
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("DFA is frozen");
+        }
+    }
 
     public Set<Character> getAlphabet() {
         return alphabet;
@@ -39,7 +113,76 @@ public class DFA {
                         .collect(Collectors.joining("\n"));
     }
 
+    // Перенумерация состояний в 0..n-1 и построение плотной таблицы переходов
+    public CompiledDFA compile() {
+        AlphabetMap map = partition();
+        int classCount = map.classCount();
+
+        Map<Set<Integer>, Integer> ids = new HashMap<>();
+        List<Set<Integer>> order = new ArrayList<>();
+        ids.put(startState, 0);
+        order.add(startState);
+
+        int[] transitions = new int[states.size() * classCount];
+        Arrays.fill(transitions, CompiledDFA.DEAD);
+        BitSet accepting = new BitSet();
+
+        for (int id = 0; id < order.size(); id++) {
+            Set<Integer> state = order.get(id);
+            if (acceptStates.contains(state)) {
+                accepting.set(id);
+            }
+            Map<Character, Set<Integer>> stateTransitions = transitionTable.getOrDefault(state, Collections.emptyMap());
+            for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                Set<Integer> nextState = stateTransitions.get(map.symbolOf(cls));
+                if (nextState == null) continue;
+
+                Integer nextId = ids.get(nextState);
+                if (nextId == null) {
+                    nextId = order.size();
+                    ids.put(nextState, nextId);
+                    order.add(nextState);
+                }
+                transitions[id * classCount + cls] = nextId;
+            }
+        }
+
+        return new CompiledDFA(map, order.size(), 0, transitions, accepting);
+    }
+
+    // Символы с одинаковым столбцом таблицы переходов объединяются в класс
+    private AlphabetMap partition() {
+        Map<Set<Integer>, Integer> index = new HashMap<>();
+        for (Set<Integer> state : states) {
+            index.put(state, index.size());
+        }
+        char[] symbols = new char[alphabet.size()];
+        long[][] signatures = new long[symbols.length][];
+        int i = 0;
+        for (Character symbol : alphabet) {
+            long[] column = new long[states.size()];
+            for (Set<Integer> state : states) {
+                Set<Integer> next = transitionTable.getOrDefault(state, Collections.emptyMap()).get(symbol);
+                column[index.get(state)] = next == null ? -1 : index.get(next);
+            }
+            symbols[i] = symbol;
+            signatures[i++] = column;
+        }
+        return AlphabetMap.partition(symbols, symbols, signatures);
+    }
+
     public boolean matches(String input) {
+        RegexListener listener = Instrumentation.listener;
+        if (listener == null) {
+            return accepts(input);
+        }
+        long begin = System.nanoTime();
+        boolean result = accepts(input);
+        listener.matched(input.length(), result, System.nanoTime() - begin);
+        return result;
+    }
+
+    private boolean accepts(String input) {
         Set<Integer> currentState = startState;
         for (int i = 0; i < input.length(); i++) {
             char symbol = input.charAt(i);
@@ -0,0 +1,113 @@
+package pack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Набор заранее скомпилированных шаблонов в одном файле:
+//   0  int  MAGIC 'PDFB'
+//   4  int  VERSION
+//   8  int  число записей
+//  12  int  резерв (0)
+//  16  записи каталога: int смещение, int длина, int длина имени в UTF-8, имя (дополнено до 4 байт)
+//      далее ДКА в формате DFASerializer, каждый выровнен по 8 байт
+// open() отображает файл в память; шаблоны сразу готовы к сопоставлению через MappedDFA.
+public final class DFABundle {
+    static final int MAGIC = 0x50444642;
+    static final int VERSION = 1;
+
+    private final Map<String, MappedDFA> patterns;
+
+    private DFABundle(Map<String, MappedDFA> patterns) {
+        this.patterns = patterns;
+    }
+
+    public static void write(Map<String, CompiledDFA> patterns, Path file) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        List<byte[]> blobs = new ArrayList<>();
+        int directorySize = 16;
+        for (Map.Entry<String, CompiledDFA> entry : patterns.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            blobs.add(DFASerializer.toBytes(entry.getValue()));
+            directorySize += 12 + align(name.length, 4);
+        }
+
+        int size = align(directorySize, 8);
+        int[] offsets = new int[blobs.size()];
+        for (int i = 0; i < blobs.size(); i++) {
+            offsets[i] = size;
+            size = align(size + blobs.get(i).length, 8);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(blobs.size()).putInt(0);
+        for (int i = 0; i < blobs.size(); i++) {
+            buffer.putInt(offsets[i]).putInt(blobs.get(i).length).putInt(names.get(i).length).put(names.get(i));
+            buffer.position(align(buffer.position(), 4));
+        }
+        for (int i = 0; i < blobs.size(); i++) {
+            buffer.position(offsets[i]);
+            buffer.put(blobs.get(i));
+        }
+        Files.write(file, buffer.array());
+    }
+
+    public static DFABundle open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 16 || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a DFA bundle: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported DFA bundle version: " + buffer.getInt(4));
+        }
+
+        int limit = buffer.limit();
+        int count = buffer.getInt(8);
+        if (count < 0 || 16 + 12L * count > limit) {
+            throw new IllegalArgumentException("Corrupt DFA bundle: " + count + " entries in " + limit + " bytes");
+        }
+        Map<String, MappedDFA> patterns = new LinkedHashMap<>();
+        int position = 16;
+        for (int i = 0; i < count; i++) {
+            if (position + 12L > limit) {
+                throw new IllegalArgumentException("Corrupt DFA bundle: directory entry " + i + " past end of file");
+            }
+            int offset = buffer.getInt(position);
+            int length = buffer.getInt(position + 4);
+            int nameLength = buffer.getInt(position + 8);
+            if (nameLength < 0 || position + 12L + nameLength > limit) {
+                throw new IllegalArgumentException("Corrupt DFA bundle: name length " + nameLength + " of entry " + i);
+            }
+            if (offset < 0 || length < 0 || (long) offset + length > limit) {
+                throw new IllegalArgumentException("Corrupt DFA bundle: entry " + i + " at " + offset + ", length " + length);
+            }
+            byte[] name = new byte[nameLength];
+            buffer.get(position + 12, name);
+            position = align(position + 12 + nameLength, 4);
+            patterns.put(new String(name, StandardCharsets.UTF_8), new MappedDFA(buffer.slice(offset, length)));
+        }
+        return new DFABundle(Collections.unmodifiableMap(patterns));
+    }
+
+    // null, если шаблона с таким именем нет
+    public MappedDFA get(String name) {
+        return patterns.get(name);
+    }
+
+    public Set<String> names() {
+        return patterns.keySet();
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) & -alignment;
+    }
+}
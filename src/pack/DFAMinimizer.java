@@ -0,0 +1,325 @@
+package pack;
+
+import java.util.*;
+
+// Минимизация ДКА алгоритмом Хопкрофта (уточнение разбиения), O(n·k·log n).
+// Недостижимые из допускающих состояния сливаются с «мёртвым» и удаляются.
+public class DFAMinimizer {
+
+    public static CompiledDFA minimize(CompiledDFA dfa) {
+        int n = dfa.getStateCount();
+        int k = dfa.getClassCount();
+        int[] transitions = new int[n * k];
+        BitSet accepting = new BitSet();
+        for (int state = 0; state < n; state++) {
+            for (int cls = 0; cls < k; cls++) {
+                transitions[state * k + cls] = dfa.transition(state, cls);
+            }
+            if (dfa.isAccepting(state)) {
+                accepting.set(state);
+            }
+        }
+
+        Partition partition = new Partition(n, k, transitions, accepting);
+        int[] order = partition.renumber(dfa.getStartState());
+        int blocks = partition.liveBlocks;
+
+        int[] result = new int[Math.max(blocks, 1) * k];
+        Arrays.fill(result, CompiledDFA.DEAD);
+        BitSet resultAccepting = new BitSet();
+        for (int state = 0; state < n; state++) {
+            int id = order[partition.blockOf[state]];
+            if (id == CompiledDFA.DEAD) continue;
+            if (accepting.get(state)) {
+                resultAccepting.set(id);
+            }
+            for (int cls = 0; cls < k; cls++) {
+                int to = transitions[state * k + cls];
+                result[id * k + cls] = to == CompiledDFA.DEAD ? CompiledDFA.DEAD : order[partition.blockOf[to]];
+            }
+        }
+        return mergeClasses(dfa.getAlphabet(), Math.max(blocks, 1), k, result, resultAccepting);
+    }
+
+    // После слияния состояний разные классы символов часто ведут себя одинаково:
+    // классы с совпадающими столбцами таблицы объединяются, совпадающие с OTHER — исключаются из алфавита
+    private static CompiledDFA mergeClasses(AlphabetMap alphabet, int n, int k, int[] transitions, BitSet accepting) {
+        long[][] columns = new long[k][n];
+        for (int cls = 0; cls < k; cls++) {
+            for (int state = 0; state < n; state++) {
+                columns[cls][state] = transitions[state * k + cls];
+            }
+        }
+        StringBuilder from = new StringBuilder();
+        StringBuilder to = new StringBuilder();
+        List<long[]> signatures = new ArrayList<>();
+        for (int cls = AlphabetMap.OTHER + 1; cls < k; cls++) {
+            if (Arrays.equals(columns[cls], columns[AlphabetMap.OTHER])) continue;
+            char[] ranges = alphabet.rangesOf(cls);
+            for (int r = 0; r < ranges.length; r += 2) {
+                from.append(ranges[r]);
+                to.append(ranges[r + 1]);
+                signatures.add(columns[cls]);
+            }
+        }
+        AlphabetMap merged = AlphabetMap.partition(from.toString().toCharArray(), to.toString().toCharArray(),
+                signatures.toArray(new long[0][]));
+        int classCount = merged.classCount();
+        if (classCount == k) {
+            return new CompiledDFA(alphabet, n, 0, transitions, accepting);
+        }
+        int[] result = new int[n * classCount];
+        for (int state = 0; state < n; state++) {
+            result[state * classCount] = transitions[state * k + AlphabetMap.OTHER];
+            for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                result[state * classCount + cls] = transitions[state * k + alphabet.classOf(merged.symbolOf(cls))];
+            }
+        }
+        return new CompiledDFA(merged, n, 0, result, accepting);
+    }
+
+    public static DFA minimize(DFA dfa) {
+        List<Character> symbols = new ArrayList<>(dfa.getAlphabet());
+        int k = symbols.size();
+
+        Map<Set<Integer>, Integer> ids = new HashMap<>();
+        List<Set<Integer>> states = new ArrayList<>(dfa.getStates());
+        for (int i = 0; i < states.size(); i++) {
+            ids.put(states.get(i), i);
+        }
+        int n = states.size();
+        int[] transitions = new int[n * k];
+        BitSet accepting = new BitSet();
+        for (int state = 0; state < n; state++) {
+            Map<Character, Set<Integer>> stateTransitions =
+                    dfa.getTransitionTable().getOrDefault(states.get(state), Collections.emptyMap());
+            for (int cls = 0; cls < k; cls++) {
+                Set<Integer> next = stateTransitions.get(symbols.get(cls));
+                transitions[state * k + cls] = next == null ? CompiledDFA.DEAD : ids.get(next);
+            }
+            if (dfa.getAcceptStates().contains(states.get(state))) {
+                accepting.set(state);
+            }
+        }
+
+        Partition partition = new Partition(n, k, transitions, accepting);
+        int[] order = partition.renumber(ids.get(dfa.getStartState()));
+
+        // Ключом состояния минимального ДКА служит первое попавшееся подмножество блока
+        List<Set<Integer>> representatives = new ArrayList<>(Collections.nCopies(partition.liveBlocks, null));
+        for (int state = 0; state < n; state++) {
+            int id = order[partition.blockOf[state]];
+            if (id != CompiledDFA.DEAD && representatives.get(id) == null) {
+                representatives.set(id, states.get(state));
+            }
+        }
+
+        DFA result = new DFA();
+        for (Character symbol : dfa.getAlphabet()) {
+            result.addSymbol(symbol);
+        }
+        result.setStartState(partition.liveBlocks == 0 ? dfa.getStartState() : representatives.get(0));
+        for (int state = 0; state < n; state++) {
+            int id = order[partition.blockOf[state]];
+            if (id == CompiledDFA.DEAD || representatives.get(id) != states.get(state)) continue;
+
+            Set<Integer> from = representatives.get(id);
+            result.addState(from);
+            if (accepting.get(state)) {
+                result.addAcceptState(from);
+            }
+            for (int cls = 0; cls < k; cls++) {
+                int to = transitions[state * k + cls];
+                if (to == CompiledDFA.DEAD || order[partition.blockOf[to]] == CompiledDFA.DEAD) continue;
+
+                result.addTransition(from, symbols.get(cls), representatives.get(order[partition.blockOf[to]]));
+            }
+        }
+        return result.freeze();
+    }
+
+    // Разбиение состояний 0..n-1 и неявного мёртвого состояния n на классы эквивалентности
+    private static final class Partition {
+        final int[] blockOf;
+        int liveBlocks;
+
+        private final int size;
+        private final int k;
+        private final int[] transitions;
+        private final int[] elements;
+        private final int[] position;
+        private final int[] blockStart;
+        private final int[] blockEnd;
+        private final int[] marked;
+        private int blockCount;
+
+        Partition(int n, int k, int[] transitions, BitSet accepting) {
+            this.size = n + 1;
+            this.k = k;
+            this.transitions = transitions;
+            blockOf = new int[size];
+            elements = new int[size];
+            position = new int[size];
+            blockStart = new int[size];
+            blockEnd = new int[size];
+            marked = new int[size];
+
+            // Начальное разбиение: допускающие | остальные (вместе с мёртвым состоянием)
+            int p = 0;
+            for (int state = accepting.nextSetBit(0); state >= 0; state = accepting.nextSetBit(state + 1)) {
+                place(state, p++, 0);
+            }
+            int acceptingCount = p;
+            int rest = acceptingCount == 0 ? 0 : 1;
+            for (int state = 0; state < size; state++) {
+                if (state == n || !accepting.get(state)) {
+                    place(state, p++, rest);
+                }
+            }
+            if (acceptingCount > 0) {
+                blockStart[0] = 0;
+                blockEnd[0] = acceptingCount;
+            }
+            blockStart[rest] = acceptingCount;
+            blockEnd[rest] = size;
+            blockCount = rest + 1;
+
+            refine(n);
+        }
+
+        private void place(int state, int index, int block) {
+            elements[index] = state;
+            position[state] = index;
+            blockOf[state] = block;
+        }
+
+        private void refine(int dead) {
+            // Обратные переходы в CSR-формате: inverse[inverseStart[t * k + c] ..] — прообразы t по c
+            int[] inverseStart = new int[size * k + 1];
+            for (int state = 0; state < size; state++) {
+                for (int cls = 0; cls < k; cls++) {
+                    inverseStart[target(state, cls, dead) * k + cls + 1]++;
+                }
+            }
+            for (int i = 0; i < size * k; i++) {
+                inverseStart[i + 1] += inverseStart[i];
+            }
+            int[] inverse = new int[size * k];
+            int[] fill = Arrays.copyOf(inverseStart, size * k);
+            for (int state = 0; state < size; state++) {
+                for (int cls = 0; cls < k; cls++) {
+                    inverse[fill[target(state, cls, dead) * k + cls]++] = state;
+                }
+            }
+
+            boolean[] pending = new boolean[size * k];
+            int[] work = new int[size * k];
+            int top = 0;
+            int initial = blockCount == 1 ? 0 : (blockEnd[0] - blockStart[0] <= blockEnd[1] - blockStart[1] ? 0 : 1);
+            for (int cls = 0; cls < k; cls++) {
+                pending[initial * k + cls] = true;
+                work[top++] = initial * k + cls;
+            }
+
+            int[] predecessors = new int[size];
+            int[] touched = new int[size];
+            while (top > 0) {
+                int splitter = work[--top];
+                pending[splitter] = false;
+                int block = splitter / k;
+                int cls = splitter % k;
+
+                int count = 0;
+                for (int i = blockStart[block]; i < blockEnd[block]; i++) {
+                    int t = elements[i];
+                    for (int j = inverseStart[t * k + cls]; j < inverseStart[t * k + cls + 1]; j++) {
+                        predecessors[count++] = inverse[j];
+                    }
+                }
+
+                int touchedCount = 0;
+                for (int i = 0; i < count; i++) {
+                    int state = predecessors[i];
+                    int b = blockOf[state];
+                    int index = position[state];
+                    int boundary = blockStart[b] + marked[b];
+                    if (index < boundary) continue;
+
+                    // Перенос отмеченного состояния в начало его блока
+                    int other = elements[boundary];
+                    elements[boundary] = state;
+                    position[state] = boundary;
+                    elements[index] = other;
+                    position[other] = index;
+                    if (marked[b]++ == 0) {
+                        touched[touchedCount++] = b;
+                    }
+                }
+
+                for (int i = 0; i < touchedCount; i++) {
+                    int b = touched[i];
+                    int split = blockStart[b] + marked[b];
+                    marked[b] = 0;
+                    if (split == blockEnd[b]) continue;
+
+                    int created = blockCount++;
+                    blockStart[created] = blockStart[b];
+                    blockEnd[created] = split;
+                    blockStart[b] = split;
+                    for (int j = blockStart[created]; j < split; j++) {
+                        blockOf[elements[j]] = created;
+                    }
+
+                    boolean createdSmaller = split - blockStart[created] <= blockEnd[b] - blockStart[b];
+                    for (int c = 0; c < k; c++) {
+                        int added;
+                        if (pending[b * k + c]) {
+                            added = created * k + c;
+                        } else {
+                            added = (createdSmaller ? created : b) * k + c;
+                        }
+                        pending[added] = true;
+                        work[top++] = added;
+                    }
+                }
+            }
+        }
+
+        private int target(int state, int cls, int dead) {
+            if (state == dead) return dead;
+            int to = transitions[state * k + cls];
+            return to == CompiledDFA.DEAD ? dead : to;
+        }
+
+        // Нумерация живых блоков обходом в ширину от начального; блок мёртвого состояния получает DEAD
+        int[] renumber(int start) {
+            int dead = size - 1;
+            int[] order = new int[blockCount];
+            Arrays.fill(order, CompiledDFA.DEAD);
+            int deadBlock = blockOf[dead];
+            if (blockOf[start] == deadBlock) {
+                liveBlocks = 0;
+                return order;
+            }
+
+            int[] queue = new int[blockCount];
+            int head = 0;
+            int tail = 0;
+            order[blockOf[start]] = tail;
+            queue[tail++] = start;
+            while (head < tail) {
+                int state = queue[head++];
+                for (int cls = 0; cls < k; cls++) {
+                    int to = target(state, cls, dead);
+                    int b = blockOf[to];
+                    if (b != deadBlock && order[b] == CompiledDFA.DEAD) {
+                        order[b] = tail;
+                        queue[tail++] = to;
+                    }
+                }
+            }
+            liveBlocks = tail;
+            return order;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package pack;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+// Двоичный формат скомпилированного ДКА (big-endian, все поля выровнены по 4 байта):
+//   0  int   MAGIC 'PDFA'
+//   4  int   VERSION
+//   8  int   число состояний n
+//  12  int   число классов k
+//  16  int   начальное состояние
+//  20  int   число блоков таблицы символ -> класс B
+//  24  int   число слов допускающего множества W
+//  28  int   число диапазонов символов R
+//  32  int[256]      смещения блоков по старшему байту символа
+//      int[B * 256]  блоки таблицы символ -> класс
+//      int[k]        границы классов в списке диапазонов
+//      int[R]        диапазоны классов 1..k-1 подряд: (from << 16) | to
+//      int[n * k]    переходы (номер состояния или -1)
+//      [int]         выравнивание до 8 байт
+//      long[W]       битовое множество допускающих состояний
+// Версия 3: классы символов — наборы диапазонов (версии 1 и 2 не читаются).
+// Файл можно отобразить в память и сопоставлять прямо по нему (MappedDFA) без разбора.
+public class DFASerializer {
+    static final int MAGIC = 0x50444641;
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 32;
+
+    public static byte[] toBytes(CompiledDFA dfa) {
+        AlphabetMap alphabet = dfa.getAlphabet();
+        int[] index = alphabet.index();
+        int[] blocks = alphabet.blocks();
+        int[] classStarts = alphabet.classStarts();
+        char[] ranges = alphabet.ranges();
+        int rangeCount = ranges.length / 2;
+        int n = dfa.getStateCount();
+        int k = dfa.getClassCount();
+        int words = (n + 63) >>> 6;
+        int blockCount = blocks.length / index.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size(blockCount, rangeCount, k, n, words)));
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(k).putInt(dfa.getStartState())
+                .putInt(blockCount).putInt(words).putInt(rangeCount);
+        for (int offset : index) {
+            buffer.putInt(offset);
+        }
+        for (int cls : blocks) {
+            buffer.putInt(cls);
+        }
+        for (int offset : classStarts) {
+            buffer.putInt(offset);
+        }
+        for (int r = 0; r < ranges.length; r += 2) {
+            buffer.putInt((ranges[r] << 16) | ranges[r + 1]);
+        }
+        for (int state = 0; state < n; state++) {
+            for (int cls = 0; cls < k; cls++) {
+                buffer.putInt(dfa.transition(state, cls));
+            }
+        }
+        if ((buffer.position() & 7) != 0) {
+            buffer.putInt(0);
+        }
+        for (int w = 0; w < words; w++) {
+            long word = 0;
+            for (int bit = 0; bit < 64 && (w << 6) + bit < n; bit++) {
+                if (dfa.isAccepting((w << 6) + bit)) {
+                    word |= 1L << bit;
+                }
+            }
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    public static void write(CompiledDFA dfa, OutputStream out) throws IOException {
+        out.write(toBytes(dfa));
+    }
+
+    // Копия в CompiledDFA (массивы копируются, но не разбираются)
+    public static CompiledDFA read(ByteBuffer buffer) {
+        MappedDFA view = new MappedDFA(buffer);
+        int n = view.getStateCount();
+        int k = view.getClassCount();
+
+        int[] index = readInts(view.buffer, view.indexBase, MappedDFA.BLOCK);
+        int[] blocks = readInts(view.buffer, view.blockBase, view.blockCount * MappedDFA.BLOCK);
+        int[] classStarts = readInts(view.buffer, view.classStartBase, k);
+        char[] ranges = new char[2 * view.rangeCount];
+        for (int r = 0; r < view.rangeCount; r++) {
+            int range = view.buffer.getInt(view.rangeBase + 4 * r);
+            ranges[2 * r] = (char) (range >>> 16);
+            ranges[2 * r + 1] = (char) range;
+        }
+        int[] transitions = readInts(view.buffer, view.transitionBase, n * k);
+        BitSet accepting = new BitSet(n);
+        for (int state = 0; state < n; state++) {
+            if (view.isAccepting(state)) {
+                accepting.set(state);
+            }
+        }
+        return new CompiledDFA(new AlphabetMap(ranges, classStarts, index, blocks), n, view.getStartState(), transitions, accepting);
+    }
+
+    // Отображение файла в память только для чтения; сопоставление идёт прямо по отображению
+    public static MappedDFA map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedDFA(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // В long, чтобы поля из испорченного заголовка не переполняли вычисление
+    static long size(int blockCount, int rangeCount, int k, int n, int words) {
+        long ints = MappedDFA.BLOCK * (1L + blockCount) + k + rangeCount + (long) n * k;
+        long bytes = HEADER_SIZE + 4 * ints;
+        bytes = (bytes + 7) & ~7;
+        return bytes + 8L * words;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int base, int count) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = buffer.getInt(base + 4 * i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,163 @@
+package pack;
+
+import java.util.*;
+
+// ДКА из производных выражения, без НКА Томпсона и построения подмножеств: состояние —
+// нормализованная производная исходного выражения (см. Derivatives), допускающее — если
+// производная допускает пустую строку.
+// compile() строит таблицу целиком; экземпляр вычисляет переходы по мере сопоставления
+// и хранит не больше maxStates состояний, сбрасывая кеш при переполнении, как LazyDFA;
+// вместе с ним сбрасываются и накопленные термы производных.
+// Экземпляр не потокобезопасен: кеш меняется при сопоставлении, каждому потоку нужен свой.
+public final class DerivativeDFA {
+    private static final int UNKNOWN = -2;
+
+    private final Derivatives derivatives;
+    private final int classCount;
+    private final int maxStates;
+    private final List<RegexTerm> states = new ArrayList<>();
+    private final Map<RegexTerm, Integer> ids = new HashMap<>();
+    private final BitSet accepting = new BitSet();
+    private final int[] transitions;
+    private int start;
+
+    private long hits;
+    private long misses;
+    private long flushes;
+
+    public DerivativeDFA(String regex, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException("Cache must hold at least 3 states: " + maxStates);
+        }
+        this.derivatives = new Derivatives(RegexParser.parse(regex));
+        this.classCount = derivatives.alphabet.classCount();
+        this.maxStates = maxStates;
+        this.transitions = new int[maxStates * classCount];
+        flush();
+        flushes = 0;
+    }
+
+    // Полная таблица переходов; при необходимости её можно затем минимизировать DFAMinimizer
+    public static CompiledDFA compile(String regex) {
+        Derivatives derivatives = new Derivatives(RegexParser.parse(regex));
+        int classCount = derivatives.alphabet.classCount();
+        List<RegexTerm> states = new ArrayList<>();
+        Map<RegexTerm, Integer> ids = new HashMap<>();
+        BitSet accepting = new BitSet();
+        states.add(derivatives.root);
+        ids.put(derivatives.root, 0);
+        int[] transitions = new int[16 * classCount];
+
+        for (int id = 0; id < states.size(); id++) {
+            if (transitions.length < (id + 1) * classCount) {
+                transitions = Arrays.copyOf(transitions, transitions.length * 2);
+            }
+            RegexTerm state = states.get(id);
+            if (state.nullable) {
+                accepting.set(id);
+            }
+            int row = id * classCount;
+            transitions[row + AlphabetMap.OTHER] = CompiledDFA.DEAD;
+            for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                RegexTerm next = derivatives.derivative(state, cls);
+                if (next == derivatives.empty) {
+                    transitions[row + cls] = CompiledDFA.DEAD;
+                    continue;
+                }
+                Integer known = ids.get(next);
+                if (known == null) {
+                    known = states.size();
+                    states.add(next);
+                    ids.put(next, known);
+                }
+                transitions[row + cls] = known;
+            }
+        }
+
+        return new CompiledDFA(derivatives.alphabet, states.size(), 0, transitions, accepting);
+    }
+
+    public boolean matches(CharSequence input) {
+        int state = start;
+        AlphabetMap alphabet = derivatives.alphabet;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            int cls = alphabet.classOf(input.charAt(i));
+            if (cls == AlphabetMap.OTHER) {
+                return false;
+            }
+            int next = transitions[state * classCount + cls];
+            if (next == UNKNOWN) {
+                misses++;
+                next = computeTransition(state, cls);
+            } else {
+                hits++;
+            }
+            if (next == CompiledDFA.DEAD) {
+                return false;
+            }
+            state = next;
+        }
+        return accepting.get(state);
+    }
+
+    public int getCachedStateCount() {
+        return states.size();
+    }
+
+    public long getCacheHits() {
+        return hits;
+    }
+
+    public long getCacheMisses() {
+        return misses;
+    }
+
+    public long getCacheFlushes() {
+        return flushes;
+    }
+
+    int getTermCount() {
+        return derivatives.termCount();
+    }
+
+    private int computeTransition(int state, int cls) {
+        RegexTerm current = states.get(state);
+        RegexTerm next = derivatives.derivative(current, cls);
+        if (next == derivatives.empty) {
+            transitions[state * classCount + cls] = CompiledDFA.DEAD;
+            return CompiledDFA.DEAD;
+        }
+        if (states.size() == maxStates && !ids.containsKey(next)) {
+            // Кеш полон: сбрасываем его, сохраняя только начальное и текущее состояния
+            flush(current, next);
+            state = intern(current);
+        }
+        int id = intern(next);
+        transitions[state * classCount + cls] = id;
+        return id;
+    }
+
+    private void flush(RegexTerm... live) {
+        flushes++;
+        states.clear();
+        ids.clear();
+        accepting.clear();
+        derivatives.retain(live);
+        start = intern(derivatives.root);
+    }
+
+    private int intern(RegexTerm term) {
+        Integer known = ids.get(term);
+        if (known != null) {
+            return known;
+        }
+        int id = states.size();
+        states.add(term);
+        ids.put(term, id);
+        Arrays.fill(transitions, id * classCount, (id + 1) * classCount, UNKNOWN);
+        if (term.nullable) {
+            accepting.set(id);
+        }
+        return id;
+    }
+}
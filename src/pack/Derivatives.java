@@ -0,0 +1,359 @@
+package pack;
+
+import java.util.*;
+
+// Производные Бжозовского над хешированными выражениями RegexTerm. Умные конструкторы
+// приводят выражения к нормальной форме подобия: ∅ и ε поглощаются, конкатенации и
+// объединения уплощаются, объединение — множество (упорядоченное по id, классы символов
+// в нём сливаются), shuffle — мультимножество. Поэтому различных производных конечное число
+// и каждая из них — готовое состояние ДКА без промежуточного НКА.
+//
+// Производные берутся по классам символов: алфавит заранее разбит на классы, символы
+// которых входят в одни и те же листья выражения, и производные по ним совпадают.
+final class Derivatives {
+    private final Map<RegexTerm, RegexTerm> terms = new HashMap<>();
+    // Номера не переиспользуются и после retain, поэтому порядок термов остаётся согласованным
+    private int nextId;
+    final RegexTerm empty;
+    final RegexTerm epsilon;
+    final RegexTerm root;
+    final AlphabetMap alphabet;
+
+    Derivatives(Postfix postfix) {
+        empty = intern(new RegexTerm(RegexTerm.EMPTY, null, null, 0, 0));
+        epsilon = intern(new RegexTerm(RegexTerm.EPSILON, null, null, 0, 0));
+        root = build(postfix);
+        alphabet = partition();
+    }
+
+    int termCount() {
+        return terms.size();
+    }
+
+    // Забывает все термы, кроме ∅, ε, исходного выражения и live вместе с их подвыражениями,
+    // и запомненные производные оставшихся; иначе ленивый ДКА копит их без ограничения
+    void retain(RegexTerm... live) {
+        Map<RegexTerm, RegexTerm> kept = new HashMap<>();
+        ArrayDeque<RegexTerm> pending = new ArrayDeque<>(List.of(empty, epsilon, root));
+        pending.addAll(Arrays.asList(live));
+        while (!pending.isEmpty()) {
+            RegexTerm term = pending.pop();
+            if (kept.putIfAbsent(term, term) == null) {
+                term.derivatives = null;
+                pending.addAll(Arrays.asList(term.args));
+            }
+        }
+        terms.clear();
+        terms.putAll(kept);
+    }
+
+    RegexTerm derivative(RegexTerm term, int cls) {
+        if (cls == AlphabetMap.OTHER) {
+            // Символы вне алфавита не входят ни в один лист
+            return empty;
+        }
+        if (term.derivatives == null) {
+            term.derivatives = new RegexTerm[alphabet.classCount()];
+        }
+        RegexTerm result = term.derivatives[cls];
+        if (result == null) {
+            result = compute(term, cls);
+            term.derivatives[cls] = result;
+        }
+        return result;
+    }
+
+    private RegexTerm compute(RegexTerm term, int cls) {
+        RegexTerm[] args = term.args;
+        switch (term.kind) {
+            case RegexTerm.CLASS:
+                return term.contains(alphabet.symbolOf(cls)) ? epsilon : empty;
+            case RegexTerm.CONCAT: {
+                // (r·s)' = r'·s | s', если r допускает пустую строку
+                List<RegexTerm> alternatives = new ArrayList<>();
+                for (int i = 0; i < args.length; i++) {
+                    RegexTerm head = derivative(args[i], cls);
+                    RegexTerm[] parts = Arrays.copyOfRange(args, i, args.length);
+                    parts[0] = head;
+                    alternatives.add(concat(parts));
+                    if (!args[i].nullable) break;
+                }
+                return union(alternatives);
+            }
+            case RegexTerm.UNION: {
+                List<RegexTerm> alternatives = new ArrayList<>(args.length);
+                for (RegexTerm arg : args) {
+                    alternatives.add(derivative(arg, cls));
+                }
+                return union(alternatives);
+            }
+            case RegexTerm.SHUFFLE: {
+                // (r || s)' = (r' || s) | (r || s'): символ достаётся одному из операндов
+                List<RegexTerm> alternatives = new ArrayList<>(args.length);
+                for (int i = 0; i < args.length; i++) {
+                    if (i > 0 && args[i] == args[i - 1]) continue;
+                    RegexTerm[] parts = args.clone();
+                    parts[i] = derivative(args[i], cls);
+                    alternatives.add(shuffle(Arrays.asList(parts)));
+                }
+                return union(alternatives);
+            }
+            case RegexTerm.STAR:
+                return concat(derivative(args[0], cls), term);
+            case RegexTerm.REPEAT:
+                return concat(derivative(args[0], cls),
+                        repeat(args[0], Math.max(term.min - 1, 0), term.max < 0 ? -1 : term.max - 1));
+            default:
+                return empty;
+        }
+    }
+
+    // Обход постфиксной записи со стеком, как в RegexParser.buildNFA
+    private RegexTerm build(Postfix postfix) {
+        RegexTerm[] stack = new RegexTerm[8];
+        int size = 0;
+        int[] code = postfix.code;
+        for (int pc = 0; pc < postfix.length; pc += 1 + Postfix.arity(code[pc])) {
+            int op = code[pc];
+            RegexTerm result;
+            if (Postfix.isBinary(op)) {
+                RegexTerm right = stack[--size];
+                RegexTerm left = stack[--size];
+                result = switch (op) {
+                    case Postfix.CONCAT -> concat(left, right);
+                    case Postfix.SHUFFLE -> shuffle(List.of(left, right));
+                    default -> union(List.of(left, right));
+                };
+            } else {
+                result = switch (op) {
+                    case Postfix.CHAR -> symbol((char) code[pc + 1]);
+                    case Postfix.STRING -> string(postfix.strings.get(code[pc + 1]));
+                    case Postfix.CLASS -> characterClass(postfix.classes.get(code[pc + 1]));
+                    case Postfix.STAR -> star(stack[--size]);
+                    case Postfix.PLUS -> {
+                        RegexTerm operand = stack[--size];
+                        yield concat(operand, star(operand));
+                    }
+                    case Postfix.OPTIONAL -> union(List.of(stack[--size], epsilon));
+                    case Postfix.REPEAT -> repeat(stack[--size], code[pc + 1], code[pc + 2]);
+                    default -> throw new IllegalArgumentException("Unknown operator: " + op);
+                };
+            }
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+            }
+            stack[size++] = result;
+        }
+        return stack[0];
+    }
+
+    private RegexTerm symbol(char c) {
+        return intern(new RegexTerm(RegexTerm.CLASS, null, new char[]{c, c}, 0, 0));
+    }
+
+    private RegexTerm string(String s) {
+        RegexTerm[] parts = new RegexTerm[s.length()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = symbol(s.charAt(i));
+        }
+        return concat(parts);
+    }
+
+    private RegexTerm characterClass(List<CharRange> ranges) {
+        char[] pairs = new char[2 * ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            pairs[2 * i] = ranges.get(i).from();
+            pairs[2 * i + 1] = ranges.get(i).to();
+        }
+        return characterClass(pairs);
+    }
+
+    // Пары диапазонов сортируются и сливаются
+    private RegexTerm characterClass(char[] pairs) {
+        int count = pairs.length / 2;
+        if (count == 0) {
+            return empty;
+        }
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = (long) pairs[2 * i] << 16 | pairs[2 * i + 1];
+        }
+        Arrays.sort(sorted);
+        char[] merged = new char[2 * count];
+        int length = 0;
+        for (long range : sorted) {
+            char from = (char) (range >>> 16);
+            char to = (char) range;
+            if (length > 0 && from <= merged[length - 1] + 1) {
+                merged[length - 1] = (char) Math.max(merged[length - 1], to);
+            } else {
+                merged[length++] = from;
+                merged[length++] = to;
+            }
+        }
+        return intern(new RegexTerm(RegexTerm.CLASS, null, Arrays.copyOf(merged, length), 0, 0));
+    }
+
+    private RegexTerm concat(RegexTerm... parts) {
+        List<RegexTerm> flat = new ArrayList<>(parts.length);
+        for (RegexTerm part : parts) {
+            if (part.kind == RegexTerm.EMPTY) {
+                return empty;
+            }
+            if (part.kind == RegexTerm.CONCAT) {
+                flat.addAll(Arrays.asList(part.args));
+            } else if (part.kind != RegexTerm.EPSILON) {
+                flat.add(part);
+            }
+        }
+        if (flat.isEmpty()) {
+            return epsilon;
+        }
+        if (flat.size() == 1) {
+            return flat.get(0);
+        }
+        return intern(new RegexTerm(RegexTerm.CONCAT, flat.toArray(new RegexTerm[0]), null, 0, 0));
+    }
+
+    private RegexTerm union(List<RegexTerm> alternatives) {
+        TreeSet<RegexTerm> flat = new TreeSet<>(Comparator.comparingInt(t -> t.id));
+        StringBuilder classRanges = new StringBuilder();
+        for (RegexTerm alternative : alternatives) {
+            if (alternative.kind == RegexTerm.UNION) {
+                flat.addAll(Arrays.asList(alternative.args));
+            } else if (alternative.kind != RegexTerm.EMPTY) {
+                flat.add(alternative);
+            }
+        }
+        // Классы символов объединения сливаются в один класс
+        int classes = 0;
+        for (Iterator<RegexTerm> it = flat.iterator(); it.hasNext(); ) {
+            RegexTerm term = it.next();
+            if (term.kind == RegexTerm.CLASS) {
+                classRanges.append(term.ranges);
+                classes++;
+                it.remove();
+            }
+        }
+        if (classes > 0) {
+            flat.add(characterClass(classRanges.toString().toCharArray()));
+        }
+        // ε поглощается любым другим выражением, допускающим пустую строку
+        if (flat.contains(epsilon)) {
+            for (RegexTerm term : flat) {
+                if (term != epsilon && term.nullable) {
+                    flat.remove(epsilon);
+                    break;
+                }
+            }
+        }
+        if (flat.isEmpty()) {
+            return empty;
+        }
+        if (flat.size() == 1) {
+            return flat.first();
+        }
+        return intern(new RegexTerm(RegexTerm.UNION, flat.toArray(new RegexTerm[0]), null, 0, 0));
+    }
+
+    private RegexTerm shuffle(List<RegexTerm> operands) {
+        List<RegexTerm> flat = new ArrayList<>(operands.size());
+        for (RegexTerm operand : operands) {
+            if (operand.kind == RegexTerm.EMPTY) {
+                return empty;
+            }
+            if (operand.kind == RegexTerm.SHUFFLE) {
+                flat.addAll(Arrays.asList(operand.args));
+            } else if (operand.kind != RegexTerm.EPSILON) {
+                flat.add(operand);
+            }
+        }
+        if (flat.isEmpty()) {
+            return epsilon;
+        }
+        if (flat.size() == 1) {
+            return flat.get(0);
+        }
+        // shuffle коммутативен и ассоциативен: операнды упорядочиваются, повторы сохраняются
+        flat.sort(Comparator.comparingInt(t -> t.id));
+        return intern(new RegexTerm(RegexTerm.SHUFFLE, flat.toArray(new RegexTerm[0]), null, 0, 0));
+    }
+
+    private RegexTerm star(RegexTerm operand) {
+        if (operand.kind == RegexTerm.STAR) {
+            return operand;
+        }
+        if (operand.kind == RegexTerm.EMPTY || operand.kind == RegexTerm.EPSILON) {
+            return epsilon;
+        }
+        if (operand.kind == RegexTerm.UNION && operand.args[0] == epsilon) {
+            // (ε|r)* = r*; ε — самый первый созданный терм после ∅, поэтому стоит в начале
+            return star(union(Arrays.asList(operand.args).subList(1, operand.args.length)));
+        }
+        return intern(new RegexTerm(RegexTerm.STAR, new RegexTerm[]{operand}, null, 0, 0));
+    }
+
+    private RegexTerm repeat(RegexTerm operand, int min, int max) {
+        if (max == 0 || operand.kind == RegexTerm.EPSILON) {
+            return epsilon;
+        }
+        if (operand.kind == RegexTerm.EMPTY) {
+            return min == 0 ? epsilon : empty;
+        }
+        if (max < 0 && min == 0) {
+            return star(operand);
+        }
+        if (min == 1 && max == 1) {
+            return operand;
+        }
+        if (min == 0 && max == 1) {
+            return union(List.of(operand, epsilon));
+        }
+        return intern(new RegexTerm(RegexTerm.REPEAT, new RegexTerm[]{operand}, null, min, max));
+    }
+
+    private RegexTerm intern(RegexTerm term) {
+        RegexTerm existing = terms.putIfAbsent(term, term);
+        if (existing != null) {
+            return existing;
+        }
+        term.id = nextId++;
+        return term;
+    }
+
+    // Разбиение алфавита границами диапазонов всех листьев; сигнатура интервала —
+    // множество листьев, в которые он входит
+    private AlphabetMap partition() {
+        List<RegexTerm> leaves = new ArrayList<>();
+        TreeSet<Integer> cuts = new TreeSet<>();
+        for (RegexTerm term : terms.keySet()) {
+            if (term.kind != RegexTerm.CLASS) continue;
+            leaves.add(term);
+            for (int r = 0; r < term.ranges.length; r += 2) {
+                cuts.add((int) term.ranges[r]);
+                cuts.add(term.ranges[r + 1] + 1);
+            }
+        }
+        leaves.sort(Comparator.comparingInt(t -> t.id));
+        StringBuilder from = new StringBuilder();
+        StringBuilder to = new StringBuilder();
+        List<long[]> signatures = new ArrayList<>();
+        Integer low = cuts.isEmpty() ? null : cuts.first();
+        for (Integer high = low == null ? null : cuts.higher(low); high != null; low = high, high = cuts.higher(low)) {
+            long[] signature = new long[(leaves.size() + 63) >>> 6];
+            boolean covered = false;
+            for (int i = 0; i < leaves.size(); i++) {
+                if (leaves.get(i).contains((char) (int) low)) {
+                    signature[i >>> 6] |= 1L << i;
+                    covered = true;
+                }
+            }
+            if (!covered) continue;
+            from.append((char) (int) low);
+            to.append((char) (high - 1));
+            signatures.add(signature);
+        }
+        return AlphabetMap.partition(from.toString().toCharArray(), to.toString().toCharArray(),
+                signatures.toArray(new long[0][]));
+    }
+}
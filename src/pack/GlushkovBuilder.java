@@ -0,0 +1,417 @@
+package pack;
+
+import java.util.*;
+
+// Построение автомата позиций (Глушкова) прямо из ОПЗ (Postfix), без ε-переходов:
+// каждая буква или класс символов выражения — отдельное состояние, плюс одно начальное (n + 1 состояний).
+// Фрагмент подвыражения хранит переходы из начала (first), конечные позиции (last)
+// и допуск пустого слова; переходы follow добавляются сразу в общий НКА без копирования.
+class GlushkovBuilder {
+
+    private static final class Fragment {
+        // Переход из начала фрагмента: (from << 48) | (to << 32) | состояние
+        long[] first;
+        int firstSize;
+        int[] last;
+        int lastSize;
+        boolean nullable;
+        // Состояния фрагмента занимают номера с base до текущего конца НКА
+        int base;
+
+        Fragment(int firstCapacity, int lastCapacity) {
+            first = new long[Math.max(firstCapacity, 1)];
+            last = new int[Math.max(lastCapacity, 1)];
+        }
+
+        void addFirst(long edge) {
+            if (firstSize == first.length) {
+                first = Arrays.copyOf(first, firstSize * 2);
+            }
+            first[firstSize++] = edge;
+        }
+
+        void addFirst(Fragment other) {
+            if (firstSize + other.firstSize > first.length) {
+                first = Arrays.copyOf(first, Math.max(firstSize + other.firstSize, firstSize * 2));
+            }
+            System.arraycopy(other.first, 0, first, firstSize, other.firstSize);
+            firstSize += other.firstSize;
+        }
+
+        void addLast(int state) {
+            if (lastSize == last.length) {
+                last = Arrays.copyOf(last, lastSize * 2);
+            }
+            last[lastSize++] = state;
+        }
+
+        void addLast(Fragment other) {
+            if (lastSize + other.lastSize > last.length) {
+                last = Arrays.copyOf(last, Math.max(lastSize + other.lastSize, lastSize * 2));
+            }
+            System.arraycopy(other.last, 0, last, lastSize, other.lastSize);
+            lastSize += other.lastSize;
+        }
+    }
+
+    public static NFA build(Postfix postfix) {
+        NFA nfa = new NFA();
+        Integer start = nfa.createState();
+        nfa.setStartState(start);
+
+        Deque<Fragment> stack = new ArrayDeque<>();
+        boolean shuffled = false;
+        int[] code = postfix.code;
+        for (int pc = 0; pc < postfix.length; pc += 1 + Postfix.arity(code[pc])) {
+            switch (code[pc]) {
+                case Postfix.CHAR -> {
+                    char c = (char) code[pc + 1];
+                    stack.push(position(nfa, List.of(new CharRange(c, c))));
+                }
+                case Postfix.STRING -> stack.push(literal(nfa, postfix.strings.get(code[pc + 1])));
+                case Postfix.CLASS -> stack.push(position(nfa, postfix.classes.get(code[pc + 1])));
+                case Postfix.STAR -> stack.push(star(nfa, stack.pop()));
+                case Postfix.PLUS -> stack.push(plus(nfa, stack.pop()));
+                case Postfix.OPTIONAL -> stack.push(optional(stack.pop()));
+                case Postfix.REPEAT -> stack.push(repeat(nfa, stack.pop(), code[pc + 1], code[pc + 2]));
+                case Postfix.CONCAT -> {
+                    Fragment right = stack.pop();
+                    stack.push(concat(nfa, stack.pop(), right));
+                }
+                case Postfix.UNION -> {
+                    Fragment right = stack.pop();
+                    stack.push(union(stack.pop(), right));
+                }
+                case Postfix.SHUFFLE -> {
+                    Fragment right = stack.pop();
+                    stack.push(shuffle(nfa, stack.pop(), right));
+                    shuffled = true;
+                }
+                default -> throw new IllegalArgumentException("Unknown operator: " + code[pc]);
+            }
+        }
+
+        Fragment result = stack.pop();
+        for (int i = 0; i < result.firstSize; i++) {
+            addTransition(nfa, start, result.first[i]);
+        }
+        for (int i = 0; i < result.lastSize; i++) {
+            nfa.addAcceptState(result.last[i]);
+        }
+        if (result.nullable) {
+            nfa.addAcceptState(start);
+        }
+
+        // Позиции операндов shuffle остаются недостижимыми — убираем их
+        return shuffled ? reachable(nfa) : nfa;
+    }
+
+    // Позиция с переходом по каждому из диапазонов
+    private static Fragment position(NFA nfa, List<CharRange> ranges) {
+        int position = nfa.createState();
+        Fragment fragment = new Fragment(ranges.size(), 1);
+        fragment.base = position;
+        for (CharRange range : ranges) {
+            fragment.addFirst(edge(range.from(), range.to(), position));
+        }
+        fragment.addLast(position);
+        return fragment;
+    }
+
+    // Строка — конкатенация позиций её символов
+    private static Fragment literal(NFA nfa, String text) {
+        Fragment result = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Fragment letter = position(nfa, List.of(new CharRange(c, c)));
+            result = result == null ? letter : concat(nfa, result, letter);
+        }
+        return result;
+    }
+
+    private static Fragment concat(NFA nfa, Fragment a, Fragment b) {
+        link(nfa, a, b);
+        if (a.nullable) {
+            a.addFirst(b);
+        }
+        if (b.nullable) {
+            b.addLast(a);
+        }
+        a.last = b.last;
+        a.lastSize = b.lastSize;
+        a.nullable &= b.nullable;
+        return a;
+    }
+
+    private static Fragment union(Fragment a, Fragment b) {
+        a.addFirst(b);
+        a.addLast(b);
+        a.nullable |= b.nullable;
+        return a;
+    }
+
+    private static Fragment star(NFA nfa, Fragment a) {
+        link(nfa, a, a);
+        a.nullable = true;
+        return a;
+    }
+
+    private static Fragment plus(NFA nfa, Fragment a) {
+        link(nfa, a, a);
+        return a;
+    }
+
+    private static Fragment optional(Fragment a) {
+        a.nullable = true;
+        return a;
+    }
+
+    // Повторение от min до max раз (max < 0 — без ограничения): копии фрагмента
+    // соединяются справа налево, необязательные копии вкладываются друг в друга
+    private static Fragment repeat(NFA nfa, Fragment a, int min, int max) {
+        int copies = max < 0 ? Math.max(min, 1) : max;
+        if (copies == 0) {
+            Fragment empty = new Fragment(0, 0);
+            empty.nullable = true;
+            empty.base = nfa.getStates().size();
+            return empty;
+        }
+        // Все копии снимаются до соединения, пока переходы a не выходят за его состояния
+        Fragment[] parts = new Fragment[copies];
+        parts[0] = a;
+        int limit = nfa.getStates().size();
+        for (int i = 1; i < copies; i++) {
+            parts[i] = copy(nfa, a, limit);
+        }
+
+        Fragment tail;
+        int i = copies - 1;
+        if (max < 0) {
+            tail = min == 0 ? star(nfa, parts[i]) : plus(nfa, parts[i]);
+            i--;
+        } else {
+            tail = null;
+        }
+        for (; i >= 0; i--) {
+            tail = tail == null ? parts[i] : concat(nfa, parts[i], tail);
+            if (max >= 0 && i >= min) {
+                tail = optional(tail);
+            }
+        }
+        return tail;
+    }
+
+    // Копия фрагмента с состояниями [a.base, limit) и переходами между ними
+    private static Fragment copy(NFA nfa, Fragment a, int limit) {
+        int base = nfa.createState();
+        for (int s = a.base + 1; s < limit; s++) {
+            nfa.createState();
+        }
+        int offset = base - a.base;
+        for (int s = a.base; s < limit; s++) {
+            for (long e : moves(nfa, a, s)) {
+                addTransition(nfa, s + offset, edge(from(e), to(e), target(e) + offset));
+            }
+        }
+        Fragment result = new Fragment(a.firstSize, a.lastSize);
+        for (int i = 0; i < a.firstSize; i++) {
+            long e = a.first[i];
+            result.addFirst(edge(from(e), to(e), target(e) + offset));
+        }
+        for (int i = 0; i < a.lastSize; i++) {
+            result.addLast(a.last[i] + offset);
+        }
+        result.nullable = a.nullable;
+        result.base = base;
+        return result;
+    }
+
+    // follow: из каждой конечной позиции a — переходы начала b
+    private static void link(NFA nfa, Fragment a, Fragment b) {
+        for (int i = 0; i < a.lastSize; i++) {
+            for (int j = 0; j < b.firstSize; j++) {
+                addTransition(nfa, a.last[i], b.first[j]);
+            }
+        }
+    }
+
+    // Произведение автоматов операндов: строятся только пары, достижимые из пары начал.
+    // Начало операнда обозначается -1 и, как и начало результата, состоянием не является.
+    private static Fragment shuffle(NFA nfa, Fragment a, Fragment b) {
+        Set<Integer> lastA = lastSet(a);
+        Set<Integer> lastB = lastSet(b);
+
+        LongIntMap pairStates = new LongIntMap();
+        LongQueue queue = new LongQueue();
+        Fragment result = new Fragment(a.firstSize + b.firstSize, 1);
+        result.nullable = a.nullable && b.nullable;
+        result.base = a.base;
+
+        long startPair = pair(-1, -1);
+        queue.add(startPair);
+        while (!queue.isEmpty()) {
+            long current = queue.poll();
+            int p = (int) (current >> 32);
+            int q = (int) current;
+            Integer from = current == startPair ? null : pairStates.get(current);
+
+            for (long e : moves(nfa, a, p)) {
+                int next = pairState(nfa, pairStates, queue, target(e), q, lastA, lastB, result);
+                addEdge(nfa, result, from, e, next);
+            }
+            for (long e : moves(nfa, b, q)) {
+                int next = pairState(nfa, pairStates, queue, p, target(e), lastA, lastB, result);
+                addEdge(nfa, result, from, e, next);
+            }
+        }
+        return result;
+    }
+
+    private static int pairState(NFA nfa, LongIntMap pairStates, LongQueue queue, int p, int q,
+                                 Set<Integer> lastA, Set<Integer> lastB, Fragment result) {
+        long key = pair(p, q);
+        int state = pairStates.get(key);
+        if (state == LongIntMap.MISSING) {
+            state = nfa.createState();
+            pairStates.put(key, state);
+            queue.add(key);
+            if (lastA.contains(p) && lastB.contains(q)) {
+                result.addLast(state);
+            }
+        }
+        return state;
+    }
+
+    // Переход с меткой ребра e в состояние to
+    private static void addEdge(NFA nfa, Fragment result, Integer from, long e, int to) {
+        long edge = edge(from(e), to(e), to);
+        if (from == null) {
+            result.addFirst(edge);
+        } else {
+            addTransition(nfa, from, edge);
+        }
+    }
+
+    private static void addTransition(NFA nfa, int from, long edge) {
+        nfa.addRangeTransition(from, from(edge), to(edge), target(edge));
+    }
+
+    // Переходы из позиции операнда (из начала — переходы first)
+    private static long[] moves(NFA nfa, Fragment fragment, int position) {
+        if (position < 0) {
+            return Arrays.copyOf(fragment.first, fragment.firstSize);
+        }
+        Map<Character, Set<Integer>> transitions = nfa.getTransitions().getOrDefault(position, Collections.emptyMap());
+        List<Long> edges = new ArrayList<>();
+        for (Map.Entry<Character, Set<Integer>> entry : transitions.entrySet()) {
+            for (Integer to : entry.getValue()) {
+                edges.add(edge(entry.getKey(), entry.getKey(), to));
+            }
+        }
+        Map<CharRange, Set<Integer>> rangeTransitions = nfa.getRangeTransitions().getOrDefault(position, Collections.emptyMap());
+        for (Map.Entry<CharRange, Set<Integer>> entry : rangeTransitions.entrySet()) {
+            for (Integer to : entry.getValue()) {
+                edges.add(edge(entry.getKey().from(), entry.getKey().to(), to));
+            }
+        }
+        long[] result = new long[edges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = edges.get(i);
+        }
+        return result;
+    }
+
+    private static Set<Integer> lastSet(Fragment fragment) {
+        Set<Integer> result = new HashSet<>();
+        for (int i = 0; i < fragment.lastSize; i++) {
+            result.add(fragment.last[i]);
+        }
+        if (fragment.nullable) {
+            result.add(-1);
+        }
+        return result;
+    }
+
+    // Копия НКА только с состояниями, достижимыми из начального
+    private static NFA reachable(NFA nfa) {
+        NFA result = new NFA();
+        Map<Integer, Integer> stateMap = new HashMap<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        stateMap.put(nfa.getStartState(), result.createState());
+        queue.add(nfa.getStartState());
+        while (!queue.isEmpty()) {
+            Integer state = queue.poll();
+            Integer from = stateMap.get(state);
+            if (nfa.getAcceptStates().contains(state)) {
+                result.addAcceptState(from);
+            }
+            Map<Character, Set<Integer>> transitions = nfa.getTransitions().getOrDefault(state, Collections.emptyMap());
+            for (Map.Entry<Character, Set<Integer>> entry : transitions.entrySet()) {
+                for (Integer to : entry.getValue()) {
+                    Integer mapped = stateMap.get(to);
+                    if (mapped == null) {
+                        mapped = result.createState();
+                        stateMap.put(to, mapped);
+                        queue.add(to);
+                    }
+                    result.addTransition(from, entry.getKey(), mapped);
+                }
+            }
+            Map<CharRange, Set<Integer>> rangeTransitions = nfa.getRangeTransitions().getOrDefault(state, Collections.emptyMap());
+            for (Map.Entry<CharRange, Set<Integer>> entry : rangeTransitions.entrySet()) {
+                for (Integer to : entry.getValue()) {
+                    Integer mapped = stateMap.get(to);
+                    if (mapped == null) {
+                        mapped = result.createState();
+                        stateMap.put(to, mapped);
+                        queue.add(to);
+                    }
+                    result.addRangeTransition(from, entry.getKey().from(), entry.getKey().to(), mapped);
+                }
+            }
+        }
+        result.setStartState(stateMap.get(nfa.getStartState()));
+        return result;
+    }
+
+    private static final class LongQueue {
+        private long[] items = new long[16];
+        private int head;
+        private int tail;
+
+        void add(long item) {
+            if (tail == items.length) {
+                items = Arrays.copyOf(items, items.length * 2);
+            }
+            items[tail++] = item;
+        }
+
+        long poll() {
+            return items[head++];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+
+    private static long edge(char from, char to, int state) {
+        return ((long) from << 48) | ((long) to << 32) | (state & 0xffffffffL);
+    }
+
+    private static char from(long edge) {
+        return (char) (edge >>> 48);
+    }
+
+    private static char to(long edge) {
+        return (char) (edge >>> 32);
+    }
+
+    private static int target(long edge) {
+        return (int) edge;
+    }
+
+    private static long pair(int p, int q) {
+        return ((long) p << 32) | (q & 0xffffffffL);
+    }
+}
@@ -0,0 +1,19 @@
+package pack;
+
+// Точка подключения RegexListener. Пока приёмник не установлен, горячие пути
+// ограничиваются чтением одного поля: время не замеряется и события не создаются.
+public final class Instrumentation {
+    static volatile RegexListener listener;
+
+    private Instrumentation() {
+    }
+
+    // null отключает сбор метрик
+    public static void setListener(RegexListener listener) {
+        Instrumentation.listener = listener;
+    }
+
+    public static RegexListener getListener() {
+        return listener;
+    }
+}
@@ -0,0 +1,268 @@
+package pack;
+
+import java.util.*;
+
+// Массивное представление НКА: переходы в CSR-формате по классам символов,
+// ε-замыкания каждого состояния вычислены один раз заранее.
+final class IntNFA {
+    final int stateCount;
+    final int start;
+    final AlphabetMap alphabet;
+    final long[] accepting;
+    // Переходы состояния s: edgeClass/edgeTarget[edgeOffset[s] .. edgeOffset[s + 1])
+    final int[] edgeOffset;
+    final int[] edgeClass;
+    final int[] edgeTarget;
+    final int[][] closure;
+    // Номер шаблона допускающего состояния или -1; null, если НКА без пометок
+    final int[] acceptTag;
+
+    IntNFA(NFA nfa) {
+        int maxState = -1;
+        for (Integer state : nfa.getStates()) {
+            maxState = Math.max(maxState, state);
+        }
+        stateCount = maxState + 1;
+        start = nfa.getStartState();
+
+        // Сигнатура класса — отсортированные рёбра (from << 32) | to
+        List<long[]> classEdges = new ArrayList<>();
+        alphabet = partition(nfa, classEdges);
+
+        accepting = new long[words()];
+        for (Integer state : nfa.getAcceptStates()) {
+            accepting[state >>> 6] |= 1L << state;
+        }
+
+        int[][] epsilon = new int[stateCount][];
+        for (Map.Entry<Integer, Map<Character, Set<Integer>>> entry : nfa.getTransitions().entrySet()) {
+            Set<Integer> targets = entry.getValue().get(null);
+            if (targets != null) {
+                epsilon[entry.getKey()] = toArray(targets);
+            }
+        }
+
+        // Рёбра по классам в CSR-формате: подсчёт по состояниям, затем раскладка
+        edgeOffset = new int[stateCount + 1];
+        int edgeCount = 0;
+        for (long[] edges : classEdges) {
+            for (long edge : edges) {
+                edgeOffset[(int) (edge >>> 32) + 1]++;
+                edgeCount++;
+            }
+        }
+        for (int s = 0; s < stateCount; s++) {
+            edgeOffset[s + 1] += edgeOffset[s];
+        }
+        edgeClass = new int[edgeCount];
+        edgeTarget = new int[edgeCount];
+        int[] fill = Arrays.copyOf(edgeOffset, stateCount);
+        for (int cls = AlphabetMap.OTHER + 1; cls < classEdges.size(); cls++) {
+            for (long edge : classEdges.get(cls)) {
+                int e = fill[(int) (edge >>> 32)]++;
+                edgeClass[e] = cls;
+                edgeTarget[e] = (int) edge;
+            }
+        }
+
+        closure = computeClosures(epsilon);
+
+        if (nfa.getAcceptTags().isEmpty()) {
+            acceptTag = null;
+        } else {
+            acceptTag = new int[stateCount];
+            Arrays.fill(acceptTag, -1);
+            for (Map.Entry<Integer, Integer> entry : nfa.getAcceptTags().entrySet()) {
+                acceptTag[entry.getKey()] = entry.getValue();
+            }
+        }
+    }
+
+    int words() {
+        return (stateCount + 63) >>> 6;
+    }
+
+    boolean isAccepting(long[] set) {
+        for (int w = 0; w < accepting.length; w++) {
+            if ((set[w] & accepting[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    // Отсортированные номера шаблонов, допускаемых подмножеством
+    int[] matchSet(long[] set) {
+        int count = 0;
+        for (int w = 0; w < accepting.length; w++) {
+            count += Long.bitCount(set[w] & accepting[w]);
+        }
+        int[] tags = new int[count];
+        int size = 0;
+        for (int w = 0; w < accepting.length; w++) {
+            for (long word = set[w] & accepting[w]; word != 0; word &= word - 1) {
+                int tag = acceptTag[(w << 6) + Long.numberOfTrailingZeros(word)];
+                if (tag >= 0) {
+                    tags[size++] = tag;
+                }
+            }
+        }
+        Arrays.sort(tags, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || tags[unique - 1] != tags[i]) {
+                tags[unique++] = tags[i];
+            }
+        }
+        return Arrays.copyOf(tags, unique);
+    }
+
+    // Добавить в set ε-замыкание состояния
+    void addClosure(long[] set, int state) {
+        if ((set[state >>> 6] & (1L << state)) != 0) {
+            // Замыкание уже включено: оно содержится в замыкании того, кто добавил state
+            return;
+        }
+        for (int s : closure[state]) {
+            set[s >>> 6] |= 1L << s;
+        }
+    }
+
+    // Переход подмножества по классу символов с ε-замыканием; false, если результат пуст
+    boolean step(StateSet subset, int cls, long[] out) {
+        Arrays.fill(out, 0);
+        boolean any = false;
+        for (int s = subset.nextState(0); s >= 0; s = subset.nextState(s + 1)) {
+            for (int e = edgeOffset[s]; e < edgeOffset[s + 1]; e++) {
+                if (edgeClass[e] == cls) {
+                    addClosure(out, edgeTarget[e]);
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    // Символы с одинаковым множеством рёбер (from, to) по всему НКА неразличимы и попадают в один класс.
+    // Границы диапазонов и отдельных символов режут алфавит на элементарные интервалы,
+    // интервалы с одинаковыми рёбрами сливаются. В classEdges записываются рёбра каждого класса.
+    private static AlphabetMap partition(NFA nfa, List<long[]> classEdges) {
+        List<int[]> labels = new ArrayList<>();
+        List<Long> labelEdges = new ArrayList<>();
+        TreeSet<Integer> cuts = new TreeSet<>();
+        for (Map.Entry<Integer, Map<Character, Set<Integer>>> state : nfa.getTransitions().entrySet()) {
+            for (Map.Entry<Character, Set<Integer>> entry : state.getValue().entrySet()) {
+                if (entry.getKey() == null) continue;
+                addLabel(labels, labelEdges, cuts, state.getKey(), entry.getKey(), entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<Integer, Map<CharRange, Set<Integer>>> state : nfa.getRangeTransitions().entrySet()) {
+            for (Map.Entry<CharRange, Set<Integer>> entry : state.getValue().entrySet()) {
+                CharRange range = entry.getKey();
+                addLabel(labels, labelEdges, cuts, state.getKey(), range.from(), range.to(), entry.getValue());
+            }
+        }
+
+        int[] bounds = new int[cuts.size()];
+        int b = 0;
+        for (Integer cut : cuts) {
+            bounds[b++] = cut;
+        }
+        int intervals = Math.max(bounds.length - 1, 0);
+        List<List<Long>> edges = new ArrayList<>(intervals);
+        for (int i = 0; i < intervals; i++) {
+            edges.add(new ArrayList<>());
+        }
+        for (int l = 0; l < labels.size(); l++) {
+            int[] label = labels.get(l);
+            for (int i = Arrays.binarySearch(bounds, label[0]); i < intervals && bounds[i] <= label[1]; i++) {
+                edges.get(i).add(labelEdges.get(l));
+            }
+        }
+
+        // Интервалы без рёбер (промежутки между метками) остаются в классе OTHER
+        int used = 0;
+        char[] from = new char[intervals];
+        char[] to = new char[intervals];
+        long[][] signatures = new long[intervals][];
+        for (int i = 0; i < intervals; i++) {
+            List<Long> list = edges.get(i);
+            if (list.isEmpty()) continue;
+            long[] signature = new long[list.size()];
+            for (int j = 0; j < signature.length; j++) {
+                signature[j] = list.get(j);
+            }
+            Arrays.sort(signature);
+            int unique = 0;
+            for (long edge : signature) {
+                if (unique == 0 || signature[unique - 1] != edge) {
+                    signature[unique++] = edge;
+                }
+            }
+            from[used] = (char) bounds[i];
+            to[used] = (char) (bounds[i + 1] - 1);
+            signatures[used] = Arrays.copyOf(signature, unique);
+            used++;
+        }
+        AlphabetMap alphabet = AlphabetMap.partition(Arrays.copyOf(from, used), Arrays.copyOf(to, used),
+                Arrays.copyOf(signatures, used));
+
+        classEdges.add(new long[0]);
+        for (int cls = AlphabetMap.OTHER + 1; cls < alphabet.classCount(); cls++) {
+            classEdges.add(null);
+        }
+        for (int i = 0; i < used; i++) {
+            classEdges.set(alphabet.classOf(from[i]), signatures[i]);
+        }
+        return alphabet;
+    }
+
+    // Метка (from, to) на переходах state -> targets; каждое ребро записывается отдельной меткой
+    private static void addLabel(List<int[]> labels, List<Long> labelEdges, TreeSet<Integer> cuts,
+                                 int state, char from, char to, Set<Integer> targets) {
+        cuts.add((int) from);
+        cuts.add(to + 1);
+        for (Integer target : targets) {
+            labels.add(new int[]{from, to});
+            labelEdges.add(((long) state << 32) | target);
+        }
+    }
+
+    private int[][] computeClosures(int[][] epsilon) {
+        int[][] result = new int[stateCount][];
+        int[] stamp = new int[stateCount];
+        int[] stack = new int[stateCount];
+        int[] buffer = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            if (epsilon[s] == null) {
+                result[s] = new int[]{s};
+                continue;
+            }
+            int mark = s + 1;
+            int size = 0;
+            int top = 0;
+            stack[top++] = s;
+            stamp[s] = mark;
+            while (top > 0) {
+                int state = stack[--top];
+                buffer[size++] = state;
+                if (epsilon[state] == null) continue;
+                for (int next : epsilon[state]) {
+                    if (stamp[next] != mark) {
+                        stamp[next] = mark;
+                        stack[top++] = next;
+                    }
+                }
+            }
+            result[s] = Arrays.copyOf(buffer, size);
+        }
+        return result;
+    }
+
+    private static int[] toArray(Set<Integer> states) {
+        int[] result = new int[states.size()];
+        int i = 0;
+        for (Integer state : states) {
+            result[i++] = state;
+        }
+        return result;
+    }
+}
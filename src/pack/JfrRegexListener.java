@@ -0,0 +1,137 @@
+package pack;
+
+import jdk.jfr.*;
+
+// События JDK Flight Recorder в категории "Regex". Событие создаётся, только если оно
+// включено в записи; проверки matches по умолчанию выключены — их слишком много:
+// jcmd <pid> JFR.start settings=profile +pack.Match#enabled=true
+public final class JfrRegexListener implements RegexListener {
+
+    @Name("pack.NFABuilt")
+    @Label("NFA Built")
+    @Category("Regex")
+    static final class NFABuiltEvent extends Event {
+        @Label("Regex")
+        String regex;
+        @Label("States")
+        int states;
+        @Label("Duration")
+        @Timespan
+        long nanos;
+    }
+
+    @Name("pack.ShuffleBuilt")
+    @Label("Shuffle Product")
+    @Category("Regex")
+    static final class ShuffleEvent extends Event {
+        @Label("Left States")
+        int leftStates;
+        @Label("Right States")
+        int rightStates;
+        @Label("Product States")
+        int productStates;
+        @Label("Duration")
+        @Timespan
+        long nanos;
+    }
+
+    @Name("pack.SubsetConstruction")
+    @Label("Subset Construction")
+    @Category("Regex")
+    static final class SubsetEvent extends Event {
+        @Label("NFA States")
+        int nfaStates;
+        @Label("DFA States")
+        int dfaStates;
+        @Label("Closures")
+        long closures;
+        @Label("Duration")
+        @Timespan
+        long nanos;
+    }
+
+    @Name("pack.DFACompiled")
+    @Label("DFA Compiled")
+    @Category("Regex")
+    static final class CompiledEvent extends Event {
+        @Label("States")
+        int states;
+        @Label("Classes")
+        int classes;
+        @Label("Table Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("pack.Match")
+    @Label("Match")
+    @Category("Regex")
+    @Enabled(false)
+    static final class MatchEvent extends Event {
+        @Label("Length")
+        int length;
+        @Label("Matched")
+        boolean matched;
+        @Label("Duration")
+        @Timespan
+        long nanos;
+    }
+
+    private static final EventType NFA_BUILT = EventType.getEventType(NFABuiltEvent.class);
+    private static final EventType SHUFFLE = EventType.getEventType(ShuffleEvent.class);
+    private static final EventType SUBSET = EventType.getEventType(SubsetEvent.class);
+    private static final EventType COMPILED = EventType.getEventType(CompiledEvent.class);
+    private static final EventType MATCH = EventType.getEventType(MatchEvent.class);
+
+    @Override
+    public void nfaBuilt(String regex, int states, long nanos) {
+        if (!NFA_BUILT.isEnabled()) return;
+        NFABuiltEvent event = new NFABuiltEvent();
+        event.regex = regex;
+        event.states = states;
+        event.nanos = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void shuffleBuilt(int leftStates, int rightStates, int productStates, long nanos) {
+        if (!SHUFFLE.isEnabled()) return;
+        ShuffleEvent event = new ShuffleEvent();
+        event.leftStates = leftStates;
+        event.rightStates = rightStates;
+        event.productStates = productStates;
+        event.nanos = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void subsetConstruction(int nfaStates, int dfaStates, long closures, long nanos) {
+        if (!SUBSET.isEnabled()) return;
+        SubsetEvent event = new SubsetEvent();
+        event.nfaStates = nfaStates;
+        event.dfaStates = dfaStates;
+        event.closures = closures;
+        event.nanos = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void dfaCompiled(int states, int classes, long bytes) {
+        if (!COMPILED.isEnabled()) return;
+        CompiledEvent event = new CompiledEvent();
+        event.states = states;
+        event.classes = classes;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    @Override
+    public void matched(int length, boolean matched, long nanos) {
+        if (!MATCH.isEnabled()) return;
+        MatchEvent event = new MatchEvent();
+        event.length = length;
+        event.matched = matched;
+        event.nanos = nanos;
+        event.commit();
+    }
+}
@@ -0,0 +1,72 @@
+package pack;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма длительностей с корзинами по степеням двойки наносекунд:
+// корзина b содержит значения из [2^(b-1), 2^b), корзина 0 — нулевые.
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += counts.get(b);
+        }
+        return total;
+    }
+
+    // Верхняя граница корзины, в которую попадает заданная доля значений (0 < fraction <= 1)
+    public long percentile(double fraction) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction must be in (0, 1]: " + fraction);
+        }
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += snapshot[b];
+            if (seen >= rank && seen > 0) {
+                return upperBound(b);
+            }
+        }
+        return 0;
+    }
+
+    public long[] snapshot() {
+        long[] result = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            result[b] = counts.get(b);
+        }
+        return result;
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount() + ", p50<=" + percentile(0.5) + "ns, p99<="
+                + percentile(0.99) + "ns, max<=" + percentile(1) + "ns}";
+    }
+
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
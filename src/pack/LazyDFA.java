@@ -0,0 +1,114 @@
+package pack;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Ленивый ДКА: состояния строятся по мере того, как их достигает вход, и хранятся
+// в ограниченном кеше. При переполнении кеш сбрасывается целиком (как в RE2),
+// поэтому расход памяти не зависит от шаблона. Экземпляр не потокобезопасен.
+public final class LazyDFA {
+    private static final int UNKNOWN = -2;
+
+    private final IntNFA nfa;
+    private final int classCount;
+    private final int maxStates;
+    private final SubsetTable states = new SubsetTable();
+    private final BitSet accepting = new BitSet();
+    private final int[] transitions;
+    private final long[] scratch;
+    private int start;
+
+    private long hits;
+    private long misses;
+    private long flushes;
+
+    public LazyDFA(NFA nfa, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException("Cache must hold at least 3 states: " + maxStates);
+        }
+        this.nfa = new IntNFA(nfa);
+        this.classCount = this.nfa.alphabet.classCount();
+        this.maxStates = maxStates;
+        this.transitions = new int[maxStates * classCount];
+        this.scratch = new long[this.nfa.words()];
+        flush();
+        flushes = 0;
+    }
+
+    public boolean matches(CharSequence input) {
+        int state = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            int cls = nfa.alphabet.classOf(input.charAt(i));
+            if (cls == AlphabetMap.OTHER) {
+                return false;
+            }
+            int next = transitions[state * classCount + cls];
+            if (next == UNKNOWN) {
+                misses++;
+                next = computeTransition(state, cls);
+            } else {
+                hits++;
+            }
+            if (next == CompiledDFA.DEAD) {
+                return false;
+            }
+            state = next;
+        }
+        return accepting.get(state);
+    }
+
+    public int getCachedStateCount() {
+        return states.size();
+    }
+
+    public long getCacheHits() {
+        return hits;
+    }
+
+    public long getCacheMisses() {
+        return misses;
+    }
+
+    public long getCacheFlushes() {
+        return flushes;
+    }
+
+    private int computeTransition(int state, int cls) {
+        StateSet current = states.get(state);
+        if (!nfa.step(current, cls, scratch)) {
+            transitions[state * classCount + cls] = CompiledDFA.DEAD;
+            return CompiledDFA.DEAD;
+        }
+        if (states.size() == maxStates && states.find(scratch) < 0) {
+            // Кеш полон: сбрасываем его, сохраняя только начальное и текущее состояния
+            long[] next = scratch.clone();
+            flush();
+            state = intern(current.words());
+            System.arraycopy(next, 0, scratch, 0, next.length);
+        }
+        int next = intern(scratch);
+        transitions[state * classCount + cls] = next;
+        return next;
+    }
+
+    private void flush() {
+        flushes++;
+        states.clear();
+        accepting.clear();
+        Arrays.fill(scratch, 0);
+        nfa.addClosure(scratch, nfa.start);
+        start = intern(scratch);
+    }
+
+    private int intern(long[] set) {
+        int before = states.size();
+        int id = states.intern(set);
+        if (id == before) {
+            Arrays.fill(transitions, id * classCount, (id + 1) * classCount, UNKNOWN);
+            if (nfa.isAccepting(set)) {
+                accepting.set(id);
+            }
+        }
+        return id;
+    }
+}
@@ -0,0 +1,140 @@
+package pack;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Обязательные литералы шаблона по его постфиксной записи: prefix — строка, с которой начинается
+// любое совпадение, factor — самая длинная найденная подстрока, входящая в любое совпадение.
+// Анализ консервативный: пустая строка означает, что литерал не найден.
+// Для каждого подвыражения известны exact (единственная допускаемая строка или null),
+// общий префикс, общий суффикс и обязательная подстрока; в конкатенации обязателен и стык
+// суффикса левой части с префиксом правой.
+final class Literals {
+    // Ограничение длины литералов, чтобы a{100000} не порождал стотысячные строки
+    static final int MAX_LENGTH = 64;
+
+    final String prefix;
+    final String factor;
+
+    private Literals(String prefix, String factor) {
+        this.prefix = prefix;
+        this.factor = factor;
+    }
+
+    static Literals analyse(Postfix postfix) {
+        Info[] stack = new Info[8];
+        int size = 0;
+        int[] code = postfix.code;
+        for (int pc = 0; pc < postfix.length; pc += 1 + Postfix.arity(code[pc])) {
+            int op = code[pc];
+            Info result;
+            if (Postfix.isBinary(op)) {
+                Info right = stack[--size];
+                Info left = stack[--size];
+                result = switch (op) {
+                    case Postfix.CONCAT -> concat(left, right);
+                    case Postfix.UNION -> union(left, right);
+                    // Символы операндов shuffle перемешаны, ни одна строка не обязательна
+                    default -> Info.NONE;
+                };
+            } else {
+                result = switch (op) {
+                    case Postfix.CHAR -> Info.exact(String.valueOf((char) code[pc + 1]));
+                    case Postfix.STRING -> Info.exact(postfix.strings.get(code[pc + 1]));
+                    case Postfix.CLASS -> characterClass(postfix.classes.get(code[pc + 1]));
+                    case Postfix.STAR, Postfix.OPTIONAL -> {
+                        size--;
+                        yield Info.NONE;
+                    }
+                    case Postfix.PLUS -> stack[--size].inexact();
+                    case Postfix.REPEAT -> repeat(stack[--size], code[pc + 1], code[pc + 2]);
+                    default -> throw new IllegalArgumentException("Unknown operator: " + op);
+                };
+            }
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+            }
+            stack[size++] = result;
+        }
+        Info root = stack[0];
+        return new Literals(root.prefix, longest(root.factor, longest(root.prefix, root.suffix)));
+    }
+
+    private static Info characterClass(List<CharRange> ranges) {
+        if (ranges.size() == 1 && ranges.get(0).from() == ranges.get(0).to()) {
+            return Info.exact(String.valueOf(ranges.get(0).from()));
+        }
+        return Info.NONE;
+    }
+
+    private static Info concat(Info left, Info right) {
+        String exact = left.exact != null && right.exact != null ? left.exact + right.exact : null;
+        String prefix = left.exact != null ? left.exact + right.prefix : left.prefix;
+        String suffix = right.exact != null ? left.suffix + right.exact : right.suffix;
+        String factor = longest(longest(left.factor, right.factor), left.suffix + right.prefix);
+        return new Info(exact, prefix, suffix, factor);
+    }
+
+    private static Info union(Info left, Info right) {
+        if (left.exact != null && left.exact.equals(right.exact)) {
+            return left;
+        }
+        int common = 0;
+        while (common < Math.min(left.prefix.length(), right.prefix.length())
+                && left.prefix.charAt(common) == right.prefix.charAt(common)) {
+            common++;
+        }
+        String prefix = left.prefix.substring(0, common);
+        common = 0;
+        while (common < Math.min(left.suffix.length(), right.suffix.length())
+                && left.suffix.charAt(left.suffix.length() - 1 - common)
+                == right.suffix.charAt(right.suffix.length() - 1 - common)) {
+            common++;
+        }
+        String suffix = left.suffix.substring(left.suffix.length() - common);
+        String factor = left.factor.equals(right.factor) ? left.factor : "";
+        return new Info(null, prefix, suffix, longest(factor, longest(prefix, suffix)));
+    }
+
+    private static Info repeat(Info operand, int min, int max) {
+        if (min == 0) {
+            return Info.NONE;
+        }
+        if (operand.exact == null) {
+            return operand.inexact();
+        }
+        // x{m,n}: обязательны m копий x подряд
+        String copies = operand.exact.repeat(Math.min(min, MAX_LENGTH / Math.max(1, operand.exact.length()) + 1));
+        Info required = Info.exact(copies);
+        return min == max && copies.length() == operand.exact.length() * min ? required : required.inexact();
+    }
+
+    private static String longest(String a, String b) {
+        return b.length() > a.length() ? b : a;
+    }
+
+    private static final class Info {
+        static final Info NONE = new Info(null, "", "", "");
+
+        final String exact;
+        final String prefix;
+        final String suffix;
+        final String factor;
+
+        Info(String exact, String prefix, String suffix, String factor) {
+            // Слишком длинные литералы укорачиваются: часть обязательной строки тоже обязательна
+            this.exact = exact != null && exact.length() <= MAX_LENGTH ? exact : null;
+            this.prefix = prefix.length() <= MAX_LENGTH ? prefix : prefix.substring(0, MAX_LENGTH);
+            this.suffix = suffix.length() <= MAX_LENGTH ? suffix : suffix.substring(suffix.length() - MAX_LENGTH);
+            this.factor = factor.length() <= MAX_LENGTH ? factor : factor.substring(0, MAX_LENGTH);
+        }
+
+        static Info exact(String literal) {
+            return new Info(literal, literal, literal, literal);
+        }
+
+        Info inexact() {
+            return new Info(null, prefix, suffix, factor);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package pack;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// ДКА поверх буфера в формате DFASerializer (обычно отображённого в память файла).
+// Таблицы читаются из буфера на месте, поэтому загрузка не требует ни разбора, ни копирования:
+// заголовок и значения таблиц только проверяются одним проходом.
+// Экземпляр неизменяем: используются только абсолютные чтения буфера.
+public final class MappedDFA {
+    static final int BLOCK = 256;
+
+    final ByteBuffer buffer;
+    final int blockCount;
+    final int rangeCount;
+    final int indexBase;
+    final int blockBase;
+    final int classStartBase;
+    final int rangeBase;
+    final int transitionBase;
+    private final int acceptBase;
+    private final int stateCount;
+    private final int classCount;
+    private final int start;
+
+    MappedDFA(ByteBuffer source) {
+        buffer = source.slice().order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < DFASerializer.HEADER_SIZE || buffer.getInt(0) != DFASerializer.MAGIC) {
+            throw new IllegalArgumentException("Not a serialized DFA");
+        }
+        int version = buffer.getInt(4);
+        if (version != DFASerializer.VERSION) {
+            throw new IllegalArgumentException("Unsupported DFA format version: " + version);
+        }
+        stateCount = buffer.getInt(8);
+        classCount = buffer.getInt(12);
+        start = buffer.getInt(16);
+        blockCount = buffer.getInt(20);
+        int words = buffer.getInt(24);
+        rangeCount = buffer.getInt(28);
+        if (stateCount <= 0 || classCount <= 0 || blockCount <= 0 || rangeCount < 0) {
+            throw new IllegalArgumentException("Corrupt DFA header: " + stateCount + " states, " + classCount
+                    + " classes, " + blockCount + " blocks, " + rangeCount + " ranges");
+        }
+        if (start < 0 || start >= stateCount) {
+            throw new IllegalArgumentException("Start state out of range: " + start);
+        }
+        if (words != (stateCount + 63) >>> 6) {
+            throw new IllegalArgumentException("Corrupt DFA header: " + words + " accept words for " + stateCount + " states");
+        }
+        if (buffer.limit() < DFASerializer.size(blockCount, rangeCount, classCount, stateCount, words)) {
+            throw new IllegalArgumentException("Truncated DFA data");
+        }
+
+        // После проверки размера все смещения меньше limit() и помещаются в int
+        indexBase = DFASerializer.HEADER_SIZE;
+        blockBase = indexBase + 4 * BLOCK;
+        classStartBase = blockBase + 4 * BLOCK * blockCount;
+        rangeBase = classStartBase + 4 * classCount;
+        transitionBase = rangeBase + 4 * rangeCount;
+        acceptBase = (transitionBase + 4 * stateCount * classCount + 7) & ~7;
+        checkTables();
+    }
+
+    // Значения таблиц — индексы при сопоставлении; один проход без копирования, чтобы
+    // испорченный файл отвергался здесь, а не исключением выхода за границы в matches
+    private void checkTables() {
+        for (int i = 0; i < BLOCK; i++) {
+            checkRange(buffer.getInt(indexBase + 4 * i), 0, BLOCK * (blockCount - 1), "block offset");
+        }
+        for (int i = 0; i < BLOCK * blockCount; i++) {
+            checkRange(buffer.getInt(blockBase + 4 * i), 0, classCount - 1, "symbol class");
+        }
+        int previous = 0;
+        for (int cls = 0; cls < classCount; cls++) {
+            previous = checkRange(buffer.getInt(classStartBase + 4 * cls), previous, rangeCount, "class start");
+        }
+        for (int i = 0, n = stateCount * classCount; i < n; i++) {
+            checkRange(buffer.getInt(transitionBase + 4 * i), CompiledDFA.DEAD, stateCount - 1, "transition");
+        }
+    }
+
+    private static int checkRange(int value, int min, int max, String field) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("Corrupt DFA data: " + field + " " + value + " not in [" + min + ", " + max + "]");
+        }
+        return value;
+    }
+
+    public boolean matches(CharSequence input) {
+        ByteBuffer buffer = this.buffer;
+        int state = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            char c = input.charAt(i);
+            int block = buffer.getInt(indexBase + 4 * (c >>> 8));
+            int cls = buffer.getInt(blockBase + 4 * (block + (c & 0xff)));
+            state = buffer.getInt(transitionBase + 4 * (state * classCount + cls));
+            if (state < 0) {
+                return false;
+            }
+        }
+        return isAccepting(state);
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    int getStartState() {
+        return start;
+    }
+
+    boolean isAccepting(int state) {
+        return (buffer.getLong(acceptBase + 8 * (state >>> 6)) & (1L << state)) != 0;
+    }
+}
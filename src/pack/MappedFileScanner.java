@@ -0,0 +1,163 @@
+package pack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Поиск строк файла, целиком соответствующих шаблону. Файл отображается в память через
+// FileChannel.map и делится на части по границам строк; части просматриваются параллельно
+// в ForkJoinPool, смещения совпавших строк сливаются по порядку. Байты разбираются
+// таблицей ДКА напрямую, без декодирования в String.
+public final class MappedFileScanner {
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = Integer.MAX_VALUE;
+
+    private final CompiledDFA dfa;
+    private final ForkJoinPool pool;
+
+    public MappedFileScanner(CompiledDFA dfa) {
+        this(dfa, ForkJoinPool.commonPool());
+    }
+
+    public MappedFileScanner(CompiledDFA dfa, ForkJoinPool pool) {
+        this.dfa = dfa;
+        this.pool = pool;
+    }
+
+    public MappedFileScanner(Pattern pattern) {
+        this(pattern.getAutomaton());
+    }
+
+    // Смещения начал совпавших строк по возрастанию. Строки разделяются '\n', завершающий '\r' отбрасывается
+    public long[] findMatchingLines(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            List<RecursiveTask<long[]>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                tasks.add(new ChunkTask(channel, bounds[i], bounds[i + 1]));
+            }
+            try {
+                return pool.submit(() -> {
+                    RecursiveTask.invokeAll(tasks);
+                    return merge(tasks);
+                }).join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // ForkJoin-задачи не сериализуются (RecursiveTask Serializable только по наследству)
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveTask<long[]> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected long[] compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return scan(buffer, start);
+        }
+    }
+
+    private long[] scan(ByteBuffer buffer, long base) {
+        long[] matches = new long[16];
+        int count = 0;
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            int row = dfa.feedUtf8(dfa.startRow(), buffer, lineStart, contentEnd);
+            if (dfa.isAcceptingRow(row)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = base + lineStart;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    // Границы частей: каждая часть начинается с начала строки
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        // Часть отображается одним буфером, поэтому её длина не больше MAX_CHUNK;
+        // ошибка возможна только при строке, которая сама не помещается в буфер
+        long target = Math.min(MAX_CHUNK - 1, Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4L)));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long position = 0;
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        while (position < size) {
+            long candidate = Math.min(size, position + target);
+            long next = candidate == size ? size : nextLineStart(channel, candidate, size, probe);
+            if (next - position > MAX_CHUNK) {
+                throw new IOException("Line longer than " + MAX_CHUNK + " bytes at offset " + position);
+            }
+            bounds.add(next);
+            position = next;
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static long[] merge(List<RecursiveTask<long[]>> tasks) {
+        int total = 0;
+        for (RecursiveTask<long[]> task : tasks) {
+            total += task.join().length;
+        }
+        long[] result = new long[total];
+        int offset = 0;
+        for (RecursiveTask<long[]> task : tasks) {
+            long[] part = task.join();
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package pack;
+
+// Найденное вхождение шаблона: полуинтервал [start, end) входа
+public final class Match {
+    private final int start;
+    private final int end;
+
+    Match(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public String group(CharSequence input) {
+        return input.subSequence(start, end).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Match)) return false;
+        Match match = (Match) o;
+        return start == match.start && end == match.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * start + end;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,56 @@
+package pack;
+
+import java.util.*;
+
+// ДКА для набора шаблонов: каждое состояние хранит номера шаблонов, которые в нём допускаются,
+// поэтому один проход по входу сообщает все совпавшие шаблоны независимо от их количества
+public final class MultiDFA {
+    private static final int[] NONE = new int[0];
+
+    private final CompiledDFA dfa;
+    private final int[][] matchSets;
+    private final int patternCount;
+
+    MultiDFA(CompiledDFA dfa, List<int[]> matchSets, int patternCount) {
+        this.dfa = dfa;
+        this.patternCount = patternCount;
+        // Одинаковые наборы разделяют один массив
+        Map<List<Integer>, int[]> shared = new HashMap<>();
+        this.matchSets = new int[matchSets.size()][];
+        for (int state = 0; state < matchSets.size(); state++) {
+            int[] set = matchSets.get(state);
+            List<Integer> key = new ArrayList<>();
+            for (int id : set) {
+                key.add(id);
+            }
+            this.matchSets[state] = set.length == 0 ? NONE : shared.computeIfAbsent(key, k -> set);
+        }
+    }
+
+    public static MultiDFA compile(List<String> regexes) {
+        List<NFA> nfas = new ArrayList<>();
+        for (String regex : regexes) {
+            nfas.add(RegexParser.parseRegexToNFA(regex));
+        }
+        return NFAToDFAConverter.compileMulti(NFABuilder.unionTagged(nfas).freeze());
+    }
+
+    // Отсортированные номера шаблонов, которым соответствует вход целиком.
+    // Наборы разделяются состояниями, поэтому наружу отдаётся копия
+    public int[] match(CharSequence input) {
+        int state = dfa.run(input);
+        return state == CompiledDFA.DEAD ? NONE : matchSets[state].clone();
+    }
+
+    public boolean matchesAny(CharSequence input) {
+        return dfa.matches(input);
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    public int getStateCount() {
+        return dfa.getStateCount();
+    }
+}
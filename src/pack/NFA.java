@@ -1,37 +1,62 @@
 package pack;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
+// После freeze() НКА неизменяем: коллекции заменяются неизменяемыми копиями, изменения запрещены.
+// Публикация в другие потоки — как у DFA: через happens-before или после проверки isFrozen()
 public class NFA {
     private int stateCounter = 0;
     private Set<Integer> states = new HashSet<>();
     private Integer startState;
     private Set<Integer> acceptStates = new HashSet<>();
     private Map<Integer, Map<Character, Set<Integer>>> transitions = new HashMap<>();
+    // Переходы по диапазонам символов (классы [a-z], любой символ)
+    private Map<Integer, Map<CharRange, Set<Integer>>> rangeTransitions = new HashMap<>();
+    // Номер шаблона для допускающих состояний объединения нескольких шаблонов
+    private Map<Integer, Integer> acceptTags = new HashMap<>();
+    private volatile boolean frozen;
 
     public Integer createState() {
+        checkNotFrozen();
         Integer state = stateCounter++;
         states.add(state);
         return state;
     }
 
     public void addTransition(Integer from, Character symbol, Integer to) {
+        checkNotFrozen();
         transitions.putIfAbsent(from, new HashMap<>());
         transitions.get(from).putIfAbsent(symbol == null ? null : symbol, new HashSet<>());
         transitions.get(from).get(symbol == null ? null : symbol).add(to);
     }
 
+    // Диапазон из одного символа хранится как обычный переход
+    public void addRangeTransition(Integer from, char lo, char hi, Integer to) {
+        if (lo == hi) {
+            addTransition(from, lo, to);
+            return;
+        }
+        checkNotFrozen();
+        rangeTransitions.computeIfAbsent(from, k -> new HashMap<>())
+                .computeIfAbsent(new CharRange(lo, hi), k -> new HashSet<>())
+                .add(to);
+    }
+
     public void setStartState(Integer state) {
+        checkNotFrozen();
         startState = state;
     }
 
     public void addAcceptState(Integer state) {
+        checkNotFrozen();
         acceptStates.add(state);
     }
 
+    public void addAcceptState(Integer state, int patternId) {
+        addAcceptState(state);
+        acceptTags.put(state, patternId);
+    }
+
     public Integer getStartState() {
         return startState;
     }
@@ -48,6 +73,49 @@ public class NFA {
         return transitions;
     }
 
+    public Map<Integer, Map<CharRange, Set<Integer>>> getRangeTransitions() {
+        return rangeTransitions;
+    }
+
+    public Map<Integer, Integer> getAcceptTags() {
+        return acceptTags;
+    }
+
+    public NFA freeze() {
+        if (frozen) {
+            return this;
+        }
+        states = Collections.unmodifiableSet(new HashSet<>(states));
+        acceptStates = Collections.unmodifiableSet(new HashSet<>(acceptStates));
+        acceptTags = Collections.unmodifiableMap(new HashMap<>(acceptTags));
+        transitions = freeze(transitions);
+        rangeTransitions = freeze(rangeTransitions);
+        frozen = true;
+        return this;
+    }
+
+    private static <K> Map<Integer, Map<K, Set<Integer>>> freeze(Map<Integer, Map<K, Set<Integer>>> transitions) {
+        Map<Integer, Map<K, Set<Integer>>> table = new HashMap<>();
+        for (Map.Entry<Integer, Map<K, Set<Integer>>> entry : transitions.entrySet()) {
+            Map<K, Set<Integer>> row = new HashMap<>();
+            for (Map.Entry<K, Set<Integer>> transition : entry.getValue().entrySet()) {
+                row.put(transition.getKey(), Collections.unmodifiableSet(new HashSet<>(transition.getValue())));
+            }
+            table.put(entry.getKey(), Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableMap(table);
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("NFA is frozen");
+        }
+    }
+
     @Override
     public String toString() {
         String res = "";
@@ -67,6 +135,16 @@ public class NFA {
                 }
             }
         }
+        for (Integer from : rangeTransitions.keySet()) {
+            Map<CharRange, Set<Integer>> transitions = rangeTransitions.get(from);
+            for (CharRange range : transitions.keySet()) {
+                for (Integer to : transitions.get(range)) {
+                    res += STR."""
+                        \{from}--[\{range}]-->\{to}
+                        """;
+                }
+            }
+        }
         return res;
     }
 }
\ No newline at end of file
@@ -14,6 +14,33 @@ public class NFABuilder {
         return nfa;
     }
 
+    // Цепочка переходов по символам строки, без ε-переходов
+    public static NFA createStringNFA(String s) {
+        NFA nfa = new NFA();
+        Integer state = nfa.createState();
+        nfa.setStartState(state);
+        for (int i = 0; i < s.length(); i++) {
+            Integer next = nfa.createState();
+            nfa.addTransition(state, s.charAt(i), next);
+            state = next;
+        }
+        nfa.addAcceptState(state);
+        return nfa;
+    }
+
+    // Класс символов: по одному переходу на диапазон
+    public static NFA createClassNFA(List<CharRange> ranges) {
+        NFA nfa = new NFA();
+        Integer start = nfa.createState();
+        Integer end = nfa.createState();
+        nfa.setStartState(start);
+        nfa.addAcceptState(end);
+        for (CharRange range : ranges) {
+            nfa.addRangeTransition(start, range.from(), range.to(), end);
+        }
+        return nfa;
+    }
+
     public static NFA concat(NFA a, NFA b) {
         NFA result = new NFA();
         Map<Integer, Integer> stateMapA = copyStates(a, result);
@@ -62,6 +89,26 @@ public class NFABuilder {
         return result;
     }
 
+    // Объединение нескольких шаблонов: допускающие состояния не сливаются,
+    // а помечаются номером шаблона (индексом в списке)
+    public static NFA unionTagged(List<NFA> nfas) {
+        NFA result = new NFA();
+        Integer newStart = result.createState();
+        result.setStartState(newStart);
+
+        for (int patternId = 0; patternId < nfas.size(); patternId++) {
+            NFA nfa = nfas.get(patternId);
+            Map<Integer, Integer> stateMap = copyStates(nfa, result);
+            result.addTransition(newStart, null, stateMap.get(nfa.getStartState()));
+            for (Integer accept : nfa.getAcceptStates()) {
+                result.addAcceptState(stateMap.get(accept), patternId);
+            }
+            copyTransitions(nfa, stateMap, result);
+        }
+
+        return result;
+    }
+
     public static NFA star(NFA a) {
         NFA result = new NFA();
         Integer newStart = result.createState();
@@ -85,50 +132,222 @@ public class NFABuilder {
         return result;
     }
 
-    public static NFA shuffle(NFA a, NFA b) {
+    // Одно или более повторений: как star, но без обхода операнда
+    public static NFA plus(NFA a) {
         NFA result = new NFA();
-        Map<Pair<Integer, Integer>, Integer> pairStateMap = new HashMap<>();
+        Integer newStart = result.createState();
+        Integer newEnd = result.createState();
+        result.setStartState(newStart);
+        result.addAcceptState(newEnd);
+
+        Map<Integer, Integer> stateMap = copyStates(a, result);
+        Integer aStart = stateMap.get(a.getStartState());
+
+        result.addTransition(newStart, null, aStart);
+
+        for (Integer acceptA : a.getAcceptStates()) {
+            result.addTransition(stateMap.get(acceptA), null, aStart);
+            result.addTransition(stateMap.get(acceptA), null, newEnd);
+        }
+
+        copyTransitions(a, stateMap, result);
+
+        return result;
+    }
+
+    // Повторение от min до max раз (max < 0 — без ограничения сверху).
+    // Переходы операнда один раз раскладываются в массивы, после чего каждая копия
+    // добавляется со своим смещением: время построения линейно по числу копий.
+    public static NFA repeat(NFA a, int min, int max) {
+        if (min < 0 || max >= 0 && max < min) {
+            throw new IllegalArgumentException("Invalid repetition bounds: " + min + ", " + max);
+        }
+        OperandTemplate template = new OperandTemplate(a);
+        int copies = max < 0 ? Math.max(min, 1) : max;
 
-        Pair<Integer, Integer> startPair = new Pair<>(a.getStartState(), b.getStartState());
-        Integer newStart = getOrCreatePairState(pairStateMap, startPair, result);
+        NFA result = new NFA();
+        Integer newStart = result.createState();
+        Integer newEnd = result.createState();
         result.setStartState(newStart);
+        result.addAcceptState(newEnd);
 
-        for (Integer stateA : a.getStates()) {
-            for (Integer stateB : b.getStates()) {
-                Pair<Integer, Integer> pair = new Pair<>(stateA, stateB);
-                getOrCreatePairState(pairStateMap, pair, result);
+        int[] bases = new int[copies];
+        for (int i = 0; i < copies; i++) {
+            bases[i] = template.copyInto(result);
+        }
+        if (copies == 0) {
+            result.addTransition(newStart, null, newEnd);
+            return result;
+        }
+
+        result.addTransition(newStart, null, bases[0] + template.start);
+        if (min == 0) {
+            result.addTransition(newStart, null, newEnd);
+        }
+        for (int i = 0; i < copies; i++) {
+            // После i + 1 копий: выход, если набран минимум, и переход к следующей копии
+            for (int accept : template.accepts) {
+                Integer from = bases[i] + accept;
+                if (i + 1 >= min) {
+                    result.addTransition(from, null, newEnd);
+                }
+                if (i + 1 < copies) {
+                    result.addTransition(from, null, bases[i + 1] + template.start);
+                } else if (max < 0) {
+                    // Последняя копия неограниченного повторения зациклена
+                    result.addTransition(from, null, bases[i] + template.start);
+                }
             }
         }
 
-        for (Map.Entry<Pair<Integer, Integer>, Integer> entry : pairStateMap.entrySet()) {
-            Pair<Integer, Integer> pair = entry.getKey();
-            Integer stateA = pair.first;
-            Integer stateB = pair.second;
-            Integer currentState = entry.getValue();
+        return result;
+    }
+
+    // Ноль или одно вхождение
+    public static NFA optional(NFA a) {
+        NFA result = new NFA();
+        Integer newStart = result.createState();
+        Integer newEnd = result.createState();
+        result.setStartState(newStart);
+        result.addAcceptState(newEnd);
+
+        Map<Integer, Integer> stateMap = copyStates(a, result);
+
+        result.addTransition(newStart, null, stateMap.get(a.getStartState()));
+        result.addTransition(newStart, null, newEnd);
+
+        for (Integer acceptA : a.getAcceptStates()) {
+            result.addTransition(stateMap.get(acceptA), null, newEnd);
+        }
+
+        copyTransitions(a, stateMap, result);
+
+        return result;
+    }
+
+    // Автомат обращённого языка: переходы развёрнуты, из нового начала ε-переходы в бывшие допускающие
+    public static NFA reverse(NFA a) {
+        NFA result = new NFA();
+        Map<Integer, Integer> stateMap = copyStates(a, result);
+        Integer newStart = result.createState();
+        result.setStartState(newStart);
+        result.addAcceptState(stateMap.get(a.getStartState()));
 
-            addTransitions(a, stateA, stateB, currentState, pairStateMap, result, true);
-            addTransitions(b, stateB, stateA, currentState, pairStateMap, result, false);
+        for (Integer acceptA : a.getAcceptStates()) {
+            result.addTransition(newStart, null, stateMap.get(acceptA));
+        }
+        for (Map.Entry<Integer, Map<Character, Set<Integer>>> entry : a.getTransitions().entrySet()) {
+            Integer from = entry.getKey();
+            for (Map.Entry<Character, Set<Integer>> transEntry : entry.getValue().entrySet()) {
+                for (Integer to : transEntry.getValue()) {
+                    result.addTransition(stateMap.get(to), transEntry.getKey(), stateMap.get(from));
+                }
+            }
+        }
+        for (Map.Entry<Integer, Map<CharRange, Set<Integer>>> entry : a.getRangeTransitions().entrySet()) {
+            Integer from = entry.getKey();
+            for (Map.Entry<CharRange, Set<Integer>> transEntry : entry.getValue().entrySet()) {
+                CharRange range = transEntry.getKey();
+                for (Integer to : transEntry.getValue()) {
+                    result.addRangeTransition(stateMap.get(to), range.from(), range.to(), stateMap.get(from));
+                }
+            }
         }
 
-        for (Pair<Integer, Integer> pair : pairStateMap.keySet()) {
-            if (a.getAcceptStates().contains(pair.first) && b.getAcceptStates().contains(pair.second)) {
-                result.addAcceptState(pairStateMap.get(pair));
+        return result;
+    }
+
+    // Произведение строится лениво: создаются только пары, достижимые из пары начальных состояний.
+    // Операнды предварительно избавляются от ε-переходов, иначе в произведение попадают
+    // все пары служебных состояний построения Томпсона.
+    public static NFA shuffle(NFA a, NFA b) {
+        RegexListener listener = Instrumentation.listener;
+        long begin = listener == null ? 0 : System.nanoTime();
+        a = removeEpsilon(a);
+        b = removeEpsilon(b);
+        NFA result = new NFA();
+        PairStates pairStates = new PairStates(result);
+
+        result.setStartState(pairStates.getOrCreate(a.getStartState(), b.getStartState()));
+
+        for (int current = 0; current < pairStates.size(); current++) {
+            int stateA = pairStates.first(current);
+            int stateB = pairStates.second(current);
+
+            if (a.getAcceptStates().contains(stateA) && b.getAcceptStates().contains(stateB)) {
+                result.addAcceptState(current);
             }
+
+            addTransitions(a, stateA, stateB, current, pairStates, result, true);
+            addTransitions(b, stateB, stateA, current, pairStates, result, false);
         }
 
+        if (listener != null) {
+            listener.shuffleBuilt(a.getStates().size(), b.getStates().size(), pairStates.size(), System.nanoTime() - begin);
+        }
         return result;
     }
 
-    private static void addTransitions(NFA nfa, Integer mainState, Integer otherState, Integer currentState, Map<Pair<Integer, Integer>, Integer> pairStateMap, NFA result, boolean isMainA) {
+    private static void addTransitions(NFA nfa, int mainState, int otherState, int currentState, PairStates pairStates, NFA result, boolean isMainA) {
         Map<Character, Set<Integer>> transitions = nfa.getTransitions().getOrDefault(mainState, Collections.emptyMap());
         for (Map.Entry<Character, Set<Integer>> entry : transitions.entrySet()) {
             Character symbol = entry.getKey();
             for (Integer nextMain : entry.getValue()) {
-                Pair<Integer, Integer> nextPair = isMainA ? new Pair<>(nextMain, otherState) : new Pair<>(otherState, nextMain);
-                Integer nextState = pairStateMap.get(nextPair);
+                int nextState = isMainA
+                        ? pairStates.getOrCreate(nextMain, otherState)
+                        : pairStates.getOrCreate(otherState, nextMain);
                 result.addTransition(currentState, symbol, nextState);
             }
         }
+        Map<CharRange, Set<Integer>> rangeTransitions = nfa.getRangeTransitions().getOrDefault(mainState, Collections.emptyMap());
+        for (Map.Entry<CharRange, Set<Integer>> entry : rangeTransitions.entrySet()) {
+            CharRange range = entry.getKey();
+            for (Integer nextMain : entry.getValue()) {
+                int nextState = isMainA
+                        ? pairStates.getOrCreate(nextMain, otherState)
+                        : pairStates.getOrCreate(otherState, nextMain);
+                result.addRangeTransition(currentState, range.from(), range.to(), nextState);
+            }
+        }
+    }
+
+    // Эквивалентный НКА без ε-переходов: остаются начальное состояние и цели переходов по символам
+    private static NFA removeEpsilon(NFA nfa) {
+        IntNFA source = new IntNFA(nfa);
+        NFA result = new NFA();
+        int[] stateMap = new int[source.stateCount];
+        Arrays.fill(stateMap, -1);
+        int[] queue = new int[source.stateCount];
+        int tail = 0;
+        char[][] ranges = new char[source.alphabet.classCount()][];
+        for (int cls = AlphabetMap.OTHER + 1; cls < ranges.length; cls++) {
+            ranges[cls] = source.alphabet.rangesOf(cls);
+        }
+
+        stateMap[source.start] = result.createState();
+        queue[tail++] = source.start;
+        result.setStartState(stateMap[source.start]);
+        for (int head = 0; head < tail; head++) {
+            int state = queue[head];
+            int from = stateMap[state];
+            for (int reached : source.closure[state]) {
+                if ((source.accepting[reached >>> 6] & (1L << reached)) != 0) {
+                    result.addAcceptState(from);
+                }
+                for (int e = source.edgeOffset[reached]; e < source.edgeOffset[reached + 1]; e++) {
+                    int to = source.edgeTarget[e];
+                    if (stateMap[to] < 0) {
+                        stateMap[to] = result.createState();
+                        queue[tail++] = to;
+                    }
+                    char[] classRanges = ranges[source.edgeClass[e]];
+                    for (int r = 0; r < classRanges.length; r += 2) {
+                        result.addRangeTransition(from, classRanges[r], classRanges[r + 1], stateMap[to]);
+                    }
+                }
+            }
+        }
+        return result;
     }
 
     private static Map<Integer, Integer> copyStates(NFA source, NFA target) {
@@ -149,32 +368,129 @@ public class NFABuilder {
                 }
             }
         }
+        for (Map.Entry<Integer, Map<CharRange, Set<Integer>>> entry : source.getRangeTransitions().entrySet()) {
+            Integer from = entry.getKey();
+            for (Map.Entry<CharRange, Set<Integer>> transEntry : entry.getValue().entrySet()) {
+                CharRange range = transEntry.getKey();
+                for (Integer to : transEntry.getValue()) {
+                    target.addRangeTransition(stateMap.get(from), range.from(), range.to(), stateMap.get(to));
+                }
+            }
+        }
     }
 
-    private static Integer getOrCreatePairState(Map<Pair<Integer, Integer>, Integer> pairStateMap, Pair<Integer, Integer> pair, NFA nfa) {
-        return pairStateMap.computeIfAbsent(pair, p -> nfa.createState());
+    // Операнд repeat в массивах: состояния перенумерованы подряд с нуля
+    private static final class OperandTemplate {
+        final int stateCount;
+        final int start;
+        final int[] accepts;
+        final int[] edgeFrom;
+        final Character[] edgeSymbol;
+        final int[] edgeTo;
+        final int[] rangeFrom;
+        final CharRange[] rangeLabel;
+        final int[] rangeTo;
+
+        OperandTemplate(NFA nfa) {
+            Map<Integer, Integer> index = new HashMap<>();
+            for (Integer state : nfa.getStates()) {
+                index.put(state, index.size());
+            }
+            stateCount = index.size();
+            start = index.get(nfa.getStartState());
+            accepts = new int[nfa.getAcceptStates().size()];
+            int i = 0;
+            for (Integer accept : nfa.getAcceptStates()) {
+                accepts[i++] = index.get(accept);
+            }
+
+            List<int[]> edges = new ArrayList<>();
+            List<Character> symbols = new ArrayList<>();
+            for (Map.Entry<Integer, Map<Character, Set<Integer>>> entry : nfa.getTransitions().entrySet()) {
+                for (Map.Entry<Character, Set<Integer>> transEntry : entry.getValue().entrySet()) {
+                    for (Integer to : transEntry.getValue()) {
+                        edges.add(new int[]{index.get(entry.getKey()), index.get(to)});
+                        symbols.add(transEntry.getKey());
+                    }
+                }
+            }
+            edgeFrom = new int[edges.size()];
+            edgeTo = new int[edges.size()];
+            edgeSymbol = symbols.toArray(new Character[0]);
+            for (int e = 0; e < edgeFrom.length; e++) {
+                edgeFrom[e] = edges.get(e)[0];
+                edgeTo[e] = edges.get(e)[1];
+            }
+
+            List<int[]> rangeEdges = new ArrayList<>();
+            List<CharRange> labels = new ArrayList<>();
+            for (Map.Entry<Integer, Map<CharRange, Set<Integer>>> entry : nfa.getRangeTransitions().entrySet()) {
+                for (Map.Entry<CharRange, Set<Integer>> transEntry : entry.getValue().entrySet()) {
+                    for (Integer to : transEntry.getValue()) {
+                        rangeEdges.add(new int[]{index.get(entry.getKey()), index.get(to)});
+                        labels.add(transEntry.getKey());
+                    }
+                }
+            }
+            rangeFrom = new int[rangeEdges.size()];
+            rangeTo = new int[rangeEdges.size()];
+            rangeLabel = labels.toArray(new CharRange[0]);
+            for (int e = 0; e < rangeFrom.length; e++) {
+                rangeFrom[e] = rangeEdges.get(e)[0];
+                rangeTo[e] = rangeEdges.get(e)[1];
+            }
+        }
+
+        // Новая копия в target; возвращает номер состояния, соответствующего нулевому
+        int copyInto(NFA target) {
+            int base = target.createState();
+            for (int s = 1; s < stateCount; s++) {
+                target.createState();
+            }
+            for (int e = 0; e < edgeFrom.length; e++) {
+                target.addTransition(base + edgeFrom[e], edgeSymbol[e], base + edgeTo[e]);
+            }
+            for (int e = 0; e < rangeFrom.length; e++) {
+                target.addRangeTransition(base + rangeFrom[e], rangeLabel[e].from(), rangeLabel[e].to(), base + rangeTo[e]);
+            }
+            return base;
+        }
     }
 
-    private static class Pair<T, U> {
-        final T first;
-        final U second;
+    // Состояния произведения: пара кодируется в long, номер состояния пары совпадает с её индексом в pairs
+    private static final class PairStates {
+        private final NFA nfa;
+        private final LongIntMap ids = new LongIntMap();
+        private long[] pairs = new long[16];
+
+        PairStates(NFA nfa) {
+            this.nfa = nfa;
+        }
+
+        int getOrCreate(int first, int second) {
+            long pair = ((long) first << 32) | (second & 0xffffffffL);
+            int state = ids.get(pair);
+            if (state == LongIntMap.MISSING) {
+                state = nfa.createState();
+                ids.put(pair, state);
+                if (state == pairs.length) {
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                }
+                pairs[state] = pair;
+            }
+            return state;
+        }
 
-        Pair(T first, U second) {
-            this.first = first;
-            this.second = second;
+        int size() {
+            return ids.size();
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof Pair)) return false;
-            Pair<?, ?> pair = (Pair<?, ?>) o;
-            return Objects.equals(first, pair.first) && Objects.equals(second, pair.second);
+        int first(int state) {
+            return (int) (pairs[state] >>> 32);
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(first, second);
+        int second(int state) {
+            return (int) pairs[state];
         }
     }
 }
@@ -13,6 +13,12 @@ public class NFATest {
         System.out.println("DFA:");
         System.out.println(dfa);
 
+        // Минимизация ДКА
+        DFA minDfa = DFAMinimizer.minimize(dfa);
+        System.out.printf("Минимизация: %d -> %d состояний%n", dfa.getStates().size(), minDfa.getStates().size());
+        System.out.println(minDfa);
+        dfa = minDfa;
+
         String[] testCases = {"", "a", "ab", "aba", "ba", "b", "abc"};
         for (String test : testCases) {
             boolean accepted = dfa.matches(test);
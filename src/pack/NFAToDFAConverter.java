@@ -3,107 +3,91 @@ package pack;
 import java.util.*;
 
 public class NFAToDFAConverter {
+    // DFA хранит переход на каждый символ отдельно, поэтому широкие классы ([^a], любой символ)
+    // в нём не представимы; для них есть compile()
+    static final int MAX_DFA_ALPHABET = 4096;
 
     public static DFA convert(NFA nfa) {
-        DFA dfa = new DFA();
-        collectAlphabet(nfa, dfa);
-
-        // ε-замыкание начального состояния НКА
-        Set<Integer> startClosure = epsilonClosure(nfa, Collections.singleton(nfa.getStartState()));
-        dfa.startState = startClosure;
-
-        // Очередь для обработки состояний ДКА
-        Queue<Set<Integer>> queue = new LinkedList<>();
-        queue.add(startClosure);
-        dfa.states.add(startClosure);
-
-        // Проверка начального состояния на допуск
-        if (isAcceptState(startClosure, nfa)) {
-            dfa.acceptStates.add(startClosure);
-        }
-
-        while (!queue.isEmpty()) {
-            Set<Integer> currentState = queue.poll();
-
-            for (Character symbol : dfa.getAlphabet()) {
-                Set<Integer> nextState = epsilonClosure(nfa, move(nfa, currentState, symbol));
-
-                if (nextState.isEmpty()) continue;
-
-                if (!dfa.states.contains(nextState)) {
-                    dfa.states.add(nextState);
-                    queue.add(nextState);
+        return convert(nfa, 1);
+    }
 
-                    if (isAcceptState(nextState, nfa)) {
-                        dfa.acceptStates.add(nextState);
-                    }
-                }
+    // Детерминизация в threads потоков; результат тот же, что и у однопоточной
+    public static DFA convert(NFA nfa, int threads) {
+        SubsetConstruction construction = SubsetConstruction.run(new IntNFA(nfa), false, threads);
+        AlphabetMap alphabet = construction.nfa.alphabet;
+        int classCount = construction.classCount;
 
-                dfa.transitionTable
-                        .computeIfAbsent(currentState, k -> new HashMap<>())
-                        .put(symbol, nextState);
+        DFA dfa = new DFA();
+        // Классы символов разворачиваются обратно в отдельные символы
+        char[][] members = new char[classCount][];
+        int symbolCount = 0;
+        for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+            members[cls] = alphabet.membersOf(cls);
+            symbolCount += members[cls].length;
+            if (symbolCount > MAX_DFA_ALPHABET) {
+                throw new IllegalArgumentException("Alphabet is too large for DFA, use compile() instead");
+            }
+            for (char symbol : members[cls]) {
+                dfa.addSymbol(symbol);
             }
         }
 
-        return dfa;
-    }
-
-    // Сбор алфавита из НКА (исключая ε)
-    private static void collectAlphabet(NFA nfa, DFA dfa) {
-        for (Map<Character, Set<Integer>> transitions : nfa.getTransitions().values()) {
-            for (Character symbol : transitions.keySet()) {
-                if (symbol != null) {
-                    dfa.getAlphabet().add(symbol);
-                }
+        // Подмножества в виде множеств номеров состояний НКА, как и прежде
+        List<Set<Integer>> states = new ArrayList<>(construction.stateCount());
+        for (int id = 0; id < construction.stateCount(); id++) {
+            StateSet subset = construction.subsets.get(id);
+            Set<Integer> state = new HashSet<>();
+            for (int s = subset.nextState(0); s >= 0; s = subset.nextState(s + 1)) {
+                state.add(s);
             }
+            states.add(state);
+            dfa.addState(state);
         }
-    }
-
-    // Вычисление ε-замыкания
-    private static Set<Integer> epsilonClosure(NFA nfa, Set<Integer> states) {
-        Set<Integer> closure = new HashSet<>(states);
-        Queue<Integer> queue = new LinkedList<>(states);
+        dfa.setStartState(states.get(0));
 
-        while (!queue.isEmpty()) {
-            Integer state = queue.poll();
-
-            Set<Integer> epsilonTransitions = nfa.getTransitions()
-                    .getOrDefault(state, Collections.emptyMap())
-                    .get(null);
+        for (int id = 0; id < states.size(); id++) {
+            Set<Integer> currentState = states.get(id);
+            if (construction.accepting.get(id)) {
+                dfa.addAcceptState(currentState);
+            }
+            for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                int next = construction.transitions[id * classCount + cls];
+                if (next == CompiledDFA.DEAD) continue;
 
-            if (epsilonTransitions != null) {
-                for (Integer nextState : epsilonTransitions) {
-                    if (!closure.contains(nextState)) {
-                        closure.add(nextState);
-                        queue.add(nextState);
-                    }
+                for (char symbol : members[cls]) {
+                    dfa.addTransition(currentState, symbol, states.get(next));
                 }
             }
         }
 
-        return closure;
+        return dfa.freeze();
     }
 
-    // Переход по символу
-    private static Set<Integer> move(NFA nfa, Set<Integer> states, Character symbol) {
-        Set<Integer> result = new HashSet<>();
-
-        for (Integer state : states) {
-            Set<Integer> transitions = nfa.getTransitions()
-                    .getOrDefault(state, Collections.emptyMap())
-                    .get(symbol);
+    // Построение ДКА сразу в компактной форме, минуя HashMap-представление
+    public static CompiledDFA compile(NFA nfa) {
+        return compile(nfa, 1);
+    }
 
-            if (transitions != null) {
-                result.addAll(transitions);
-            }
-        }
+    public static CompiledDFA compile(NFA nfa, int threads) {
+        return SubsetConstruction.run(new IntNFA(nfa), false, threads).toCompiled();
+    }
 
-        return result;
+    // ДКА для Σ*·L: допускает вход, если совпадение с шаблоном заканчивается на его последнем символе
+    public static CompiledDFA compileUnanchored(NFA nfa) {
+        return SubsetConstruction.run(new IntNFA(nfa), true).toCompiled();
     }
 
-    // Проверка на допускающее состояние
-    private static boolean isAcceptState(Set<Integer> dfaState, NFA nfa) {
-        return dfaState.stream()
-                .anyMatch(state -> nfa.getAcceptStates().contains(state));
+    // Детерминизация объединения шаблонов из NFABuilder.unionTagged с наборами совпавших шаблонов в состояниях
+    public static MultiDFA compileMulti(NFA nfa) {
+        IntNFA source = new IntNFA(nfa);
+        if (source.acceptTag == null) {
+            throw new IllegalArgumentException("NFA has no pattern tags on accept states");
+        }
+        SubsetConstruction construction = SubsetConstruction.run(source);
+        int patternCount = 0;
+        for (Integer patternId : nfa.getAcceptTags().values()) {
+            patternCount = Math.max(patternCount, patternId + 1);
+        }
+        return new MultiDFA(construction.toCompiled(), construction.matchSets, patternCount);
     }
 }
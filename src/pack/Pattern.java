@@ -0,0 +1,75 @@
+package pack;
+
+import java.util.BitSet;
+import java.util.List;
+
+// Скомпилированный шаблон: разбор, построение НКА, детерминизация и минимизация выполняются
+// один раз, результат переиспользуется через общий кеш. Экземпляр неизменяем и потокобезопасен.
+public final class Pattern {
+    private static final PatternCache CACHE = new PatternCache(4096, 256L << 20);
+
+    private final String regex;
+    private final CompiledDFA automaton;
+    // Поисковые автоматы строятся при первом вызове find; гонка безвредна, Searcher неизменяем
+    private volatile Searcher searcher;
+
+    private Pattern(String regex, CompiledDFA automaton) {
+        this.regex = regex;
+        this.automaton = automaton;
+    }
+
+    public static Pattern compile(String regex) {
+        return CACHE.get(regex);
+    }
+
+    public static boolean matches(String regex, CharSequence input) {
+        return compile(regex).matches(input);
+    }
+
+    public static PatternCache getCache() {
+        return CACHE;
+    }
+
+    static Pattern compileUncached(String regex) {
+        NFA nfa = RegexParser.parseRegexToNFA(regex);
+        return new Pattern(regex, DFAMinimizer.minimize(NFAToDFAConverter.compile(nfa)));
+    }
+
+    public boolean matches(CharSequence input) {
+        return automaton.matches(input);
+    }
+
+    public void matchAll(CharSequence[] inputs, BitSet out) {
+        automaton.matchAll(inputs, out);
+    }
+
+    public Match find(CharSequence input) {
+        return searcher().find(input);
+    }
+
+    public List<Match> findAll(CharSequence input) {
+        return searcher().findAll(input);
+    }
+
+    private Searcher searcher() {
+        Searcher result = searcher;
+        if (result == null) {
+            result = Searcher.compile(regex);
+            searcher = result;
+        }
+        return result;
+    }
+
+    public String pattern() {
+        return regex;
+    }
+
+    public CompiledDFA getAutomaton() {
+        return automaton;
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+}
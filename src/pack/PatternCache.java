@@ -0,0 +1,180 @@
+package pack;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Потокобезопасный кеш скомпилированных шаблонов с вытеснением по числу записей и по памяти.
+// Порядок вытеснения — CLOCK (приближение LRU): попадание лишь ставит флаг обращения в узле,
+// причём пишет его, только если флаг ещё не стоит, — общих счётчиков, на которых сталкивались бы
+// читатели, нет, и попадание не берёт блокировок. Одновременные промахи по одному ключу
+// компилируют шаблон один раз: остальные потоки ждут ту же CompletableFuture.
+public final class PatternCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Function<String, Pattern> compiler;
+    private final ConcurrentHashMap<String, Node> map = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    // Готовые записи в порядке обхода «часовой стрелки»; только под evictionLock
+    private final ArrayDeque<Node> clock = new ArrayDeque<>();
+    // Изменяется только под evictionLock
+    private volatile long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Node {
+        final String key;
+        final CompletableFuture<Pattern> future = new CompletableFuture<>();
+        // Было обращение с прошлого прохода стрелки
+        volatile boolean referenced;
+        // Вес учтён в bytes, запись стоит в clock; только под evictionLock
+        boolean accounted;
+        long weight;
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    public PatternCache(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, Pattern::compileUncached);
+    }
+
+    PatternCache(int maxEntries, long maxBytes, Function<String, Pattern> compiler) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive: " + maxEntries + ", " + maxBytes);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.compiler = compiler;
+    }
+
+    public Pattern get(String regex) {
+        Node node = map.get(regex);
+        if (node != null) {
+            return found(node);
+        }
+
+        Node created = new Node(regex);
+        node = map.putIfAbsent(regex, created);
+        if (node != null) {
+            return found(node);
+        }
+
+        misses.increment();
+        Pattern pattern;
+        try {
+            pattern = compiler.apply(regex);
+        } catch (RuntimeException | Error e) {
+            map.remove(regex, created);
+            created.future.completeExceptionally(e);
+            throw e;
+        }
+        created.future.complete(pattern);
+        long weight = pattern.getAutomaton().estimatedSize() + 2L * regex.length();
+        synchronized (evictionLock) {
+            // clear() мог удалить запись, пока шаблон компилировался: тогда она не учитывается
+            if (map.get(regex) == created) {
+                created.weight = weight;
+                created.accounted = true;
+                bytes += weight;
+                clock.addLast(created);
+                evictIfNeeded(created);
+            }
+        }
+        return pattern;
+    }
+
+    // Попадание в готовую запись или ожидание чужой компиляции
+    private Pattern found(Node node) {
+        if (node.future.isDone()) {
+            hits.increment();
+        } else {
+            waits.increment();
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return await(node);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    // Обращения, дождавшиеся компиляции, начатой другим потоком (не попадания и не промахи)
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long getEstimatedBytes() {
+        return bytes;
+    }
+
+    public void clear() {
+        synchronized (evictionLock) {
+            for (Node node : map.values()) {
+                if (map.remove(node.key, node) && node.accounted) {
+                    node.accounted = false;
+                    bytes -= node.weight;
+                }
+            }
+            clock.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PatternCache{size=" + size() + ", bytes=" + getEstimatedBytes() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", waits=" + getWaitCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    // Под evictionLock. Стрелка снимает флаг обращения и даёт записи второй шанс, запись без флага
+    // вытесняется. Каждая запись пропускается не больше одного раза, поэтому вытеснение — O(1) в среднем.
+    // Только что добавленная запись не вытесняется, пока есть другие: иначе, когда все остальные
+    // отмечены, стрелка снимала бы их отметки и вытесняла именно её
+    private void evictIfNeeded(Node inserted) {
+        while ((map.size() > maxEntries || bytes > maxBytes) && !clock.isEmpty()) {
+            Node node = clock.pollFirst();
+            if (node.referenced || node == inserted && !clock.isEmpty()) {
+                node.referenced = false;
+                clock.addLast(node);
+                continue;
+            }
+            if (map.remove(node.key, node)) {
+                node.accounted = false;
+                bytes -= node.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Pattern await(Node node) {
+        try {
+            return node.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+}
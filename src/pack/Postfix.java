@@ -0,0 +1,49 @@
+package pack;
+
+import java.util.*;
+
+// Разобранное выражение в обратной польской записи: коды операций и их аргументы подряд в int[].
+// CHAR c, STRING i, CLASS i и REPEAT min max несут аргументы, остальные операции — без аргументов.
+// Строки и классы символов вынесены в отдельные таблицы.
+final class Postfix {
+    static final int CHAR = 0;
+    static final int STRING = 1;
+    static final int CLASS = 2;
+    static final int CONCAT = 3;
+    static final int UNION = 4;
+    static final int SHUFFLE = 5;
+    static final int STAR = 6;
+    static final int PLUS = 7;
+    static final int OPTIONAL = 8;
+    static final int REPEAT = 9;
+
+    int[] code = new int[16];
+    int length;
+    final List<String> strings = new ArrayList<>();
+    final List<List<CharRange>> classes = new ArrayList<>();
+
+    void emit(int op) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = op;
+    }
+
+    void emit(int op, int arg) {
+        emit(op);
+        emit(arg);
+    }
+
+    // Число аргументов операции
+    static int arity(int op) {
+        return switch (op) {
+            case CHAR, STRING, CLASS -> 1;
+            case REPEAT -> 2;
+            default -> 0;
+        };
+    }
+
+    static boolean isBinary(int op) {
+        return op == CONCAT || op == UNION || op == SHUFFLE;
+    }
+}
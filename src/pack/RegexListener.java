@@ -0,0 +1,27 @@
+package pack;
+
+// Приёмник метрик построения и сопоставления. Все методы по умолчанию пустые,
+// реализация переопределяет только нужные. Устанавливается через Instrumentation.setListener;
+// методы могут вызываться из разных потоков одновременно.
+public interface RegexListener {
+
+    // Разбор выражения и построение НКА (Томпсона или Глушкова)
+    default void nfaBuilt(String regex, int states, long nanos) {
+    }
+
+    // Произведение shuffle: число состояний операндов без ε-переходов и результата
+    default void shuffleBuilt(int leftStates, int rightStates, int productStates, long nanos) {
+    }
+
+    // Построение подмножеств; closures — число добавленных ε-замыканий
+    default void subsetConstruction(int nfaStates, int dfaStates, long closures, long nanos) {
+    }
+
+    // Создана таблица ДКА; bytes — оценка занимаемой памяти
+    default void dfaCompiled(int states, int classes, long bytes) {
+    }
+
+    // Одна проверка matches
+    default void matched(int length, boolean matched, long nanos) {
+    }
+}
@@ -0,0 +1,122 @@
+package pack;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Накопление метрик в памяти: счётчики, суммарные размеры и гистограммы времени.
+// Instrumentation.setListener(new RegexMetrics()) — и метрики доступны через геттеры.
+public final class RegexMetrics implements RegexListener {
+    private final LongAdder nfaCount = new LongAdder();
+    private final LongAdder nfaStates = new LongAdder();
+    private final LongAdder subsetConstructions = new LongAdder();
+    private final LongAdder dfaStates = new LongAdder();
+    private final LongAdder closures = new LongAdder();
+    private final LongAdder shuffleStates = new LongAdder();
+    private final LongAdder tableBytes = new LongAdder();
+    private final LongAdder matchCount = new LongAdder();
+    private final LongAdder matchHits = new LongAdder();
+    private final LongAdder matchedChars = new LongAdder();
+    private final LatencyHistogram nfaTime = new LatencyHistogram();
+    private final LatencyHistogram subsetTime = new LatencyHistogram();
+    private final LatencyHistogram shuffleTime = new LatencyHistogram();
+    private final LatencyHistogram matchTime = new LatencyHistogram();
+
+    @Override
+    public void nfaBuilt(String regex, int states, long nanos) {
+        nfaCount.increment();
+        nfaStates.add(states);
+        nfaTime.record(nanos);
+    }
+
+    @Override
+    public void shuffleBuilt(int leftStates, int rightStates, int productStates, long nanos) {
+        shuffleStates.add(productStates);
+        shuffleTime.record(nanos);
+    }
+
+    @Override
+    public void subsetConstruction(int nfaStates, int dfaStates, long closures, long nanos) {
+        subsetConstructions.increment();
+        this.dfaStates.add(dfaStates);
+        this.closures.add(closures);
+        subsetTime.record(nanos);
+    }
+
+    @Override
+    public void dfaCompiled(int states, int classes, long bytes) {
+        tableBytes.add(bytes);
+    }
+
+    @Override
+    public void matched(int length, boolean matched, long nanos) {
+        matchCount.increment();
+        if (matched) {
+            matchHits.increment();
+        }
+        matchedChars.add(length);
+        matchTime.record(nanos);
+    }
+
+    public long getNfaCount() {
+        return nfaCount.sum();
+    }
+
+    public long getNfaStates() {
+        return nfaStates.sum();
+    }
+
+    public long getSubsetConstructions() {
+        return subsetConstructions.sum();
+    }
+
+    public long getDfaStates() {
+        return dfaStates.sum();
+    }
+
+    public long getClosures() {
+        return closures.sum();
+    }
+
+    public long getShuffleStates() {
+        return shuffleStates.sum();
+    }
+
+    public long getTableBytes() {
+        return tableBytes.sum();
+    }
+
+    public long getMatchCount() {
+        return matchCount.sum();
+    }
+
+    public long getMatchHits() {
+        return matchHits.sum();
+    }
+
+    public long getMatchedChars() {
+        return matchedChars.sum();
+    }
+
+    public LatencyHistogram getNfaTime() {
+        return nfaTime;
+    }
+
+    public LatencyHistogram getSubsetTime() {
+        return subsetTime;
+    }
+
+    public LatencyHistogram getShuffleTime() {
+        return shuffleTime;
+    }
+
+    public LatencyHistogram getMatchTime() {
+        return matchTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RegexMetrics{nfa=" + getNfaCount() + " (" + getNfaStates() + " states), subsets="
+                + getSubsetConstructions() + " (" + getDfaStates() + " states, " + getClosures() + " closures), tableBytes="
+                + getTableBytes() + ", matches=" + getMatchCount() + " (" + getMatchHits() + " hits), subsetTime="
+                + subsetTime + ", matchTime=" + matchTime + "}";
+    }
+}
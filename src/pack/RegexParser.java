@@ -2,176 +2,384 @@ package pack;
 
 import java.util.*;
 
+// Разбор за один проход сортировочной станцией прямо по символам выражения, без промежуточных
+// строковых токенов. Результат — Postfix; построители автоматов обходят его итеративно,
+// поэтому глубина вложенности скобок ограничена только памятью.
+//
+// Синтаксис: буквы и цифры, \c — экранированный символ, [...] и [^...] — классы символов,
+// "." — конкатенация после операнда и любой символ там, где ожидается операнд,
+// "|" — дизъюнкция, "||" — shuffle, постфиксные *, +, ?, {m}, {m,} и {m,n}.
+// Соседние операнды ("ab", "a[0-9]", "(a)(b)") соединяются конкатенацией.
 class RegexParser {
+    // Наибольшее число повторений в {m,n}
+    static final int MAX_REPEAT = 100_000;
 
-    private static List<String> shuntingYard(List<String> tokens) {
-        List<String> output = new ArrayList<>();
-        Stack<String> stack = new Stack<>();
-
-        // Таблица приоритетов операторов
-        Map<String, Integer> precedence = new HashMap<>();
-        precedence.put("*", 4);     // Высший приоритет
-        precedence.put(".", 3);     // Конкатенация
-        precedence.put("||", 2);    // Shuffle
-        precedence.put("|", 1);     // Дизъюнкция
-
-        for (String token : tokens) {
-            if (isLiteral(token)) { // Литералы (символы)
-                output.add(token);
-            } else if (token.equals("(")) {
-                stack.push(token);
-            } else if (token.equals(")")) {
-                // Выталкиваем все операторы до открывающей скобки
-                while (!stack.peek().equals("(")) {
-                    output.add(stack.pop());
-                }
-                stack.pop(); // Удаляем "("
-            } else { // Обработка операторов
-                while (!stack.isEmpty() &&
-                        !stack.peek().equals("(") &&
-                        precedence.getOrDefault(stack.peek(), 0) >= precedence.get(token)) {
-                    output.add(stack.pop());
-                }
-                stack.push(token);
-            }
-        }
+    private static final List<CharRange> ANY = List.of(new CharRange(Character.MIN_VALUE, Character.MAX_VALUE));
+    // Открывающая скобка в стеке операций
+    private static final int GROUP = -1;
 
-        // Выталкиваем оставшиеся операторы
-        while (!stack.isEmpty()) {
-            output.add(stack.pop());
-        }
+    // Приоритеты бинарных операций по коду
+    private static final int[] PRECEDENCE = new int[Postfix.REPEAT + 1];
 
-        return output;
+    static {
+        PRECEDENCE[Postfix.CONCAT] = 3;  // Конкатенация
+        PRECEDENCE[Postfix.SHUFFLE] = 2; // Shuffle
+        PRECEDENCE[Postfix.UNION] = 1;   // Дизъюнкция
     }
 
-    private static boolean isLiteral(String token) {
-        // Проверяем, является ли токен символом (не оператором или скобкой)
-        return !token.matches("[*|.()]") && !token.equals("||");
+    private final String regex;
+    private final Postfix out = new Postfix();
+    // Стек операций и позиций, на которых они встретились
+    private int[] ops = new int[16];
+    private int[] opPositions = new int[16];
+    private int top;
+    private boolean operandExpected = true;
+
+    private RegexParser(String regex) {
+        this.regex = regex;
     }
 
-    private static List<String> generateSteps(List<String> rpn) {
-        List<String> steps = new ArrayList<>();
-        Stack<String> stack = new Stack<>();
-
-        for (String token : rpn) {
-            if (token.matches("[a-zA-Z]+")) { // Поддержка многобуквенных символов
-                steps.add("createCharNFA('" + token + "')");
-                stack.push(token);
-            } else if (isUnaryOperator(token)) {
-                String operand = stack.pop();
-                String step = applyUnaryOperator(token, operand);
-                steps.add(step);
-                stack.push("(" + step + ")");
-            } else {
-                String right = stack.pop();
-                String left = stack.pop();
-                String step = applyBinaryOperator(token, left, right);
-                steps.add(step);
-                stack.push("(" + step + ")");
-            }
-        }
-        return steps;
+    static Postfix parse(String regex) {
+        return new RegexParser(regex).run();
     }
 
-    private static boolean isUnaryOperator(String token) {
-        return token.equals("*");
+    public static NFA parseRegexToNFA(String regex) {
+        RegexListener listener = Instrumentation.listener;
+        long begin = listener == null ? 0 : System.nanoTime();
+        NFA nfa = buildNFA(parse(regex)).freeze();
+        if (listener != null) {
+            listener.nfaBuilt(regex, nfa.getStates().size(), System.nanoTime() - begin);
+        }
+        return nfa;
     }
 
-    private static String applyUnaryOperator(String op, String operand) {
-        return switch (op) {
-            case "*" -> "star(" + operand + ")";
-            default -> throw new IllegalArgumentException("Unknown unary operator: " + op);
-        };
+    // Автомат позиций без ε-переходов вместо построения Томпсона
+    public static NFA parseRegexToGlushkovNFA(String regex) {
+        RegexListener listener = Instrumentation.listener;
+        long begin = listener == null ? 0 : System.nanoTime();
+        NFA nfa = GlushkovBuilder.build(parse(regex)).freeze();
+        if (listener != null) {
+            listener.nfaBuilt(regex, nfa.getStates().size(), System.nanoTime() - begin);
+        }
+        return nfa;
     }
 
-    private static String applyBinaryOperator(String op, String left, String right) {
-        return switch (op) {
-            case "." -> "concat(" + left + ", " + right + ")";
-            case "||" -> "shuffle(" + left + ", " + right + ")";
-            case "|" -> "union(" + left + ", " + right + ")";
-            default -> throw new IllegalArgumentException("Unknown operator: " + op);
-        };
+    public static DFA parseRegexToDFA(String regex, boolean minimize) {
+        DFA dfa = NFAToDFAConverter.convert(parseRegexToNFA(regex));
+        return minimize ? DFAMinimizer.minimize(dfa) : dfa;
     }
 
-    private static List<String> tokenize(String regex) {
-        List<String> tokens = new ArrayList<>();
-        StringBuilder currentToken = new StringBuilder();
+    private Postfix run() {
+        int n = regex.length();
         int i = 0;
-
-        while (i < regex.length()) {
+        while (i < n) {
             char c = regex.charAt(i);
-
             if (Character.isLetterOrDigit(c)) {
-                currentToken.append(c);
-                i++;
-            } else {
-                if (currentToken.length() > 0) {
-                    tokens.add(currentToken.toString());
-                    currentToken.setLength(0);
+                // Последовательность букв и цифр — строка из этих символов
+                int end = i + 1;
+                while (end < n && Character.isLetterOrDigit(regex.charAt(end))) {
+                    end++;
                 }
-
-                if (c == '|' && i < regex.length()-1 && regex.charAt(i+1) == '|') {
-                    tokens.add("||");
-                    i += 2;
-                } else if ("*().|".indexOf(c) != -1) {
-                    tokens.add(String.valueOf(c));
+                beginOperand(i);
+                if (end - i == 1) {
+                    out.emit(Postfix.CHAR, c);
+                } else {
+                    out.emit(Postfix.STRING, out.strings.size());
+                    out.strings.add(regex.substring(i, end));
+                }
+                i = end;
+                continue;
+            }
+            switch (c) {
+                case '(' -> {
+                    beginOperand(i);
+                    push(GROUP, i);
+                    operandExpected = true;
                     i++;
-                } else if (c == '\\') { // Экранирование
-                    if (i+1 < regex.length()) {
-                        tokens.add(String.valueOf(regex.charAt(i+1)));
-                        i += 2;
+                }
+                case ')' -> {
+                    requireOperand(i);
+                    while (top > 0 && ops[top - 1] != GROUP) {
+                        out.emit(ops[--top]);
                     }
-                } else {
-                    throw new IllegalArgumentException("Invalid character: " + c);
+                    if (top == 0) {
+                        throw error("Unmatched ')'", i);
+                    }
+                    top--;
+                    i++;
+                }
+                case '|' -> {
+                    boolean shuffle = i + 1 < n && regex.charAt(i + 1) == '|';
+                    binary(shuffle ? Postfix.SHUFFLE : Postfix.UNION, i);
+                    i += shuffle ? 2 : 1;
+                }
+                case '.' -> {
+                    if (operandExpected) {
+                        // Любой символ
+                        out.emit(Postfix.CLASS, addClass(ANY));
+                        operandExpected = false;
+                    } else {
+                        binary(Postfix.CONCAT, i);
+                    }
+                    i++;
+                }
+                case '*', '+', '?' -> {
+                    requireOperand(i);
+                    out.emit(c == '*' ? Postfix.STAR : c == '+' ? Postfix.PLUS : Postfix.OPTIONAL);
+                    i++;
+                }
+                case '{' -> {
+                    requireOperand(i);
+                    i = repeat(i);
                 }
+                case '[' -> {
+                    beginOperand(i);
+                    i = characterClass(i);
+                }
+                case '\\' -> {
+                    if (i + 1 >= n) {
+                        throw error("Dangling escape", i);
+                    }
+                    beginOperand(i);
+                    out.emit(Postfix.CHAR, regex.charAt(i + 1));
+                    i += 2;
+                }
+                default -> throw error("Invalid character '" + c + "'", i);
             }
         }
 
-        if (currentToken.length() > 0) {
-            tokens.add(currentToken.toString());
+        if (n == 0) {
+            throw new IllegalArgumentException("Empty pattern");
+        }
+        requireOperand(n);
+        while (top > 0) {
+            if (ops[top - 1] == GROUP) {
+                throw error("Unclosed '('", opPositions[top - 1]);
+            }
+            out.emit(ops[--top]);
         }
+        return out;
+    }
 
-        return tokens;
+    // Операнд после операнда — неявная конкатенация
+    private void beginOperand(int position) {
+        if (!operandExpected) {
+            binary(Postfix.CONCAT, position);
+        }
+        operandExpected = false;
     }
 
-    public static NFA parseRegexToNFA(String regex) {
-        List<String> tokens = tokenize(regex);
-        List<String> rpn = shuntingYard(tokens);
-        return buildNFAFromRPN(rpn);
+    // Операция применяется к уже разобранному операнду
+    private void requireOperand(int position) {
+        if (operandExpected) {
+            throw error("Missing operand", position);
+        }
     }
 
-    private static NFA buildNFAFromRPN(List<String> rpn) {
-        Stack<NFA> stack = new Stack<>();
+    private void binary(int op, int position) {
+        requireOperand(position);
+        while (top > 0 && ops[top - 1] != GROUP && PRECEDENCE[ops[top - 1]] >= PRECEDENCE[op]) {
+            out.emit(ops[--top]);
+        }
+        push(op, position);
+        operandExpected = true;
+    }
+
+    private void push(int op, int position) {
+        if (top == ops.length) {
+            ops = Arrays.copyOf(ops, top * 2);
+            opPositions = Arrays.copyOf(opPositions, top * 2);
+        }
+        ops[top] = op;
+        opPositions[top] = position;
+        top++;
+    }
+
+    // {m}, {m,} или {m,n}, начинающееся в start; возвращает позицию после "}"
+    private int repeat(int start) {
+        int i = start + 1;
+        int min = count(i, start);
+        i = skipDigits(i);
+        int max = min;
+        if (i < regex.length() && regex.charAt(i) == ',') {
+            i++;
+            max = i < regex.length() && regex.charAt(i) == '}' ? -1 : count(i, start);
+            i = skipDigits(i);
+        }
+        if (i >= regex.length()) {
+            throw error("Unterminated repetition", start);
+        }
+        if (regex.charAt(i) != '}') {
+            throw error("Invalid repetition", start);
+        }
+        if (max >= 0 && max < min) {
+            throw error("Repetition bounds out of order", start);
+        }
+        out.emit(Postfix.REPEAT, min);
+        out.emit(max);
+        return i + 1;
+    }
 
-        for (String token : rpn) {
-            if (token.matches("[a-zA-Z]+")) {
-                stack.push(NFABuilder.createCharNFA(token.charAt(0)));
-            } else if (isUnaryOperator(token)) {
-                NFA operand = stack.pop();
-                stack.push(applyUnaryOperator(token, operand));
+    private int count(int from, int start) {
+        int end = skipDigits(from);
+        if (end == from) {
+            throw error(from >= regex.length() ? "Unterminated repetition" : "Invalid repetition", start);
+        }
+        long value = 0;
+        for (int i = from; i < end; i++) {
+            value = value * 10 + (regex.charAt(i) - '0');
+            if (value > MAX_REPEAT) {
+                throw error("Repetition count exceeds " + MAX_REPEAT, start);
+            }
+        }
+        return (int) value;
+    }
+
+    private int skipDigits(int i) {
+        while (i < regex.length() && regex.charAt(i) >= '0' && regex.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    // Класс [...] или [^...], начинающийся в start; возвращает позицию после "]"
+    private int characterClass(int start) {
+        int n = regex.length();
+        int i = start + 1;
+        boolean negated = i < n && regex.charAt(i) == '^';
+        if (negated) {
+            i++;
+        }
+        if (i < n && regex.charAt(i) == ']') {
+            throw error("Empty character class", start);
+        }
+        List<CharRange> ranges = new ArrayList<>();
+        while (i < n && regex.charAt(i) != ']') {
+            char from = regex.charAt(i);
+            if (from == '\\') {
+                if (++i >= n) break;
+                from = regex.charAt(i);
+            }
+            i++;
+            char to = from;
+            if (i + 1 < n && regex.charAt(i) == '-' && regex.charAt(i + 1) != ']') {
+                to = regex.charAt(i + 1);
+                i += 2;
+                if (to == '\\') {
+                    if (i >= n) break;
+                    to = regex.charAt(i++);
+                }
+            }
+            if (from > to) {
+                throw error("Invalid range " + from + "-" + to + " in character class", start);
+            }
+            ranges.add(new CharRange(from, to));
+        }
+        if (i >= n) {
+            throw error("Unterminated character class", start);
+        }
+        out.emit(Postfix.CLASS, addClass(normalize(ranges, negated)));
+        return i + 1;
+    }
+
+    private int addClass(List<CharRange> ranges) {
+        out.classes.add(ranges);
+        return out.classes.size() - 1;
+    }
+
+    // Диапазоны в порядке возрастания, без пересечений; для отрицания — дополнение
+    private static List<CharRange> normalize(List<CharRange> ranges, boolean negated) {
+        ranges.sort(Comparator.comparingInt(CharRange::from));
+        List<CharRange> merged = new ArrayList<>();
+        for (CharRange range : ranges) {
+            CharRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range.from() <= last.to() + 1) {
+                merged.set(merged.size() - 1, new CharRange(last.from(), (char) Math.max(last.to(), range.to())));
             } else {
-                NFA right = stack.pop();
-                NFA left = stack.pop();
-                stack.push(applyBinaryOperator(token, left, right));
+                merged.add(range);
             }
         }
+        if (!negated) {
+            return merged;
+        }
 
-        return stack.pop();
+        List<CharRange> complement = new ArrayList<>();
+        int next = Character.MIN_VALUE;
+        for (CharRange range : merged) {
+            if (range.from() > next) {
+                complement.add(new CharRange((char) next, (char) (range.from() - 1)));
+            }
+            next = range.to() + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            complement.add(new CharRange((char) next, Character.MAX_VALUE));
+        }
+        return complement;
     }
 
-    private static NFA applyUnaryOperator(String op, NFA operand) {
-        switch (op) {
-            case "*": return NFABuilder.star(operand);
-            default: throw new IllegalArgumentException("Unknown unary operator: " + op);
+    private IllegalArgumentException error(String message, int position) {
+        return new IllegalArgumentException(message + " at position " + position + " in \"" + regex + "\"");
+    }
+
+    // Текстовая запись шагов построения, как в вызовах NFABuilder
+    static List<String> generateSteps(Postfix postfix) {
+        List<String> steps = new ArrayList<>();
+        Deque<String> stack = new ArrayDeque<>();
+        int[] code = postfix.code;
+        for (int pc = 0; pc < postfix.length; pc += 1 + Postfix.arity(code[pc])) {
+            String step = switch (code[pc]) {
+                case Postfix.CHAR -> "createCharNFA('" + (char) code[pc + 1] + "')";
+                case Postfix.STRING -> "createStringNFA(\"" + postfix.strings.get(code[pc + 1]) + "\")";
+                case Postfix.CLASS -> "createClassNFA(" + postfix.classes.get(code[pc + 1]) + ")";
+                case Postfix.STAR -> "star(" + stack.pop() + ")";
+                case Postfix.PLUS -> "plus(" + stack.pop() + ")";
+                case Postfix.OPTIONAL -> "optional(" + stack.pop() + ")";
+                case Postfix.REPEAT -> "repeat(" + stack.pop() + ", " + code[pc + 1] + ", " + code[pc + 2] + ")";
+                default -> {
+                    String right = stack.pop();
+                    String left = stack.pop();
+                    String name = code[pc] == Postfix.CONCAT ? "concat" : code[pc] == Postfix.UNION ? "union" : "shuffle";
+                    yield name + "(" + left + ", " + right + ")";
+                }
+            };
+            steps.add(step);
+            stack.push(step);
         }
+        return steps;
     }
 
-    private static NFA applyBinaryOperator(String op, NFA left, NFA right) {
-        switch (op) {
-            case ".": return NFABuilder.concat(left, right);
-            case "||": return NFABuilder.shuffle(left, right);
-            case "|": return NFABuilder.union(left, right);
-            default: throw new IllegalArgumentException("Unknown operator: " + op);
+    private static NFA buildNFA(Postfix postfix) {
+        NFA[] stack = new NFA[8];
+        int size = 0;
+        int[] code = postfix.code;
+        for (int pc = 0; pc < postfix.length; pc += 1 + Postfix.arity(code[pc])) {
+            int op = code[pc];
+            NFA result;
+            if (Postfix.isBinary(op)) {
+                NFA right = stack[--size];
+                NFA left = stack[--size];
+                result = switch (op) {
+                    case Postfix.CONCAT -> NFABuilder.concat(left, right);
+                    case Postfix.SHUFFLE -> NFABuilder.shuffle(left, right);
+                    default -> NFABuilder.union(left, right);
+                };
+            } else {
+                result = switch (op) {
+                    case Postfix.CHAR -> NFABuilder.createCharNFA((char) code[pc + 1]);
+                    case Postfix.STRING -> NFABuilder.createStringNFA(postfix.strings.get(code[pc + 1]));
+                    case Postfix.CLASS -> NFABuilder.createClassNFA(postfix.classes.get(code[pc + 1]));
+                    case Postfix.STAR -> NFABuilder.star(stack[--size]);
+                    case Postfix.PLUS -> NFABuilder.plus(stack[--size]);
+                    case Postfix.OPTIONAL -> NFABuilder.optional(stack[--size]);
+                    case Postfix.REPEAT -> NFABuilder.repeat(stack[--size], code[pc + 1], code[pc + 2]);
+                    default -> throw new IllegalArgumentException("Unknown operator: " + op);
+                };
+            }
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+            }
+            stack[size++] = result;
         }
+        return stack[0];
     }
-}
\ No newline at end of file
+}
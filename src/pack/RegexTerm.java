@@ -0,0 +1,133 @@
+package pack;
+
+import java.util.Arrays;
+
+// Узел выражения для построения по производным. Узлы создаются только через Derivatives
+// и хешируются по структуре (hash-consing): равные выражения — один и тот же объект,
+// поэтому потомки сравниваются по ссылке, а номер id задаёт порядок в нормализованных
+// объединениях и shuffle.
+final class RegexTerm {
+    static final int EMPTY = 0;    // ∅
+    static final int EPSILON = 1;  // пустая строка
+    static final int CLASS = 2;    // один символ из ranges
+    static final int CONCAT = 3;   // args[0]·args[1]·...
+    static final int UNION = 4;    // args отсортированы по id, без повторов
+    static final int SHUFFLE = 5;  // args отсортированы по id, повторы допустимы
+    static final int STAR = 6;
+    static final int REPEAT = 7;   // args[0]{min,max}, max < 0 — без верхней границы
+
+    private static final RegexTerm[] NO_ARGS = {};
+
+    final int kind;
+    final RegexTerm[] args;
+    // Пары (from, to) по возрастанию, без пересечений и смежных пар (только для CLASS)
+    final char[] ranges;
+    final int min;
+    final int max;
+    final boolean nullable;
+    private final int hash;
+
+    int id;
+    // Производные по классам символов, вычисленные ранее
+    RegexTerm[] derivatives;
+
+    RegexTerm(int kind, RegexTerm[] args, char[] ranges, int min, int max) {
+        this.kind = kind;
+        this.args = args == null ? NO_ARGS : args;
+        this.ranges = ranges;
+        this.min = min;
+        this.max = max;
+        this.nullable = nullable(kind, this.args, min);
+        this.hash = 31 * (31 * (31 * (31 * kind + Arrays.hashCode(this.args)) + Arrays.hashCode(ranges)) + min) + max;
+    }
+
+    private static boolean nullable(int kind, RegexTerm[] args, int min) {
+        switch (kind) {
+            case EPSILON, STAR:
+                return true;
+            case CONCAT, SHUFFLE:
+                for (RegexTerm arg : args) {
+                    if (!arg.nullable) return false;
+                }
+                return true;
+            case UNION:
+                for (RegexTerm arg : args) {
+                    if (arg.nullable) return true;
+                }
+                return false;
+            case REPEAT:
+                return min == 0 || args[0].nullable;
+            default:
+                return false;
+        }
+    }
+
+    boolean contains(char symbol) {
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (symbol < ranges[2 * middle]) {
+                high = middle - 1;
+            } else if (symbol > ranges[2 * middle + 1]) {
+                low = middle + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Потомки уже хешированы, поэтому сравниваются по ссылке
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RegexTerm other)) return false;
+        if (hash != other.hash || kind != other.kind || min != other.min || max != other.max
+                || args.length != other.args.length || !Arrays.equals(ranges, other.ranges)) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != other.args[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        switch (kind) {
+            case EMPTY -> sb.append("∅");
+            case EPSILON -> sb.append("ε");
+            case CLASS -> {
+                if (ranges.length == 2 && ranges[0] == ranges[1]) {
+                    sb.append(new CharRange(ranges[0], ranges[0]));
+                } else {
+                    sb.append('[');
+                    for (int r = 0; r < ranges.length; r += 2) {
+                        sb.append(new CharRange(ranges[r], ranges[r + 1]));
+                    }
+                    sb.append(']');
+                }
+            }
+            case STAR -> sb.append('(').append(args[0]).append(")*");
+            case REPEAT -> sb.append('(').append(args[0]).append("){").append(min).append(',')
+                    .append(max < 0 ? "" : String.valueOf(max)).append('}');
+            default -> {
+                String separator = kind == CONCAT ? "." : kind == UNION ? "|" : "||";
+                sb.append('(');
+                for (int i = 0; i < args.length; i++) {
+                    if (i > 0) sb.append(separator);
+                    sb.append(args[i]);
+                }
+                sb.append(')');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package pack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Поиск вхождений шаблона в тексте за линейное время (самое левое, затем самое длинное совпадение).
+// Один проход справа налево ДКА для reverse(L) находит для каждой позиции конец самого длинного
+// совпадения, начинающегося в ней: от каждой позиции-конца стартует поток, а из потоков в одном
+// состоянии остаётся тот, у которого конец дальше, — продолжения у них одинаковые. Потоков не больше,
+// чем состояний ДКА, и каждый символ читается один раз; совпадения затем выбираются слева направо.
+// Если у шаблона есть обязательный литерал (см. Literals), автоматы запускаются не на каждом символе:
+// при литеральном префиксе кандидаты в начала ищутся через indexOf и проверяются прямым ДКА
+// (пока проверки не перекрываются — иначе поиск продолжается обратным проходом, и время остаётся
+// линейным), а вход без обязательной подстроки отбрасывается сразу.
+// Экземпляр неизменяем и потокобезопасен.
+public final class Searcher {
+    private final CompiledDFA forward;
+    // ДКА для reverse(L) без Σ* в начале
+    private final CompiledDFA reverse;
+    // Литерал, с которого начинается любое совпадение, или null
+    private final String prefix;
+    // Подстрока, входящая в любое совпадение, или null
+    private final String factor;
+
+    // Без разбора выражения литералы неизвестны, предфильтр не используется
+    public Searcher(NFA nfa) {
+        this(nfa, null);
+    }
+
+    private Searcher(NFA nfa, Literals literals) {
+        this.forward = DFAMinimizer.minimize(NFAToDFAConverter.compile(nfa));
+        this.reverse = DFAMinimizer.minimize(NFAToDFAConverter.compile(NFABuilder.reverse(nfa)));
+        this.prefix = literals == null || literals.prefix.isEmpty() ? null : literals.prefix;
+        this.factor = literals == null || literals.factor.isEmpty() ? null : literals.factor;
+    }
+
+    public static Searcher compile(String regex) {
+        return new Searcher(RegexParser.parseRegexToNFA(regex), Literals.analyse(RegexParser.parse(regex)));
+    }
+
+    public boolean hasPrefilter() {
+        return prefix != null || factor != null;
+    }
+
+    // Литеральный префикс, по которому ищутся кандидаты в начала совпадений, или null
+    public String getPrefixLiteral() {
+        return prefix;
+    }
+
+    // Обязательная подстрока, без которой вход отбрасывается, или null
+    public String getRequiredLiteral() {
+        return factor;
+    }
+
+    public Match find(CharSequence input) {
+        return find(input, 0);
+    }
+
+    public Match find(CharSequence input, int from) {
+        if (prefix != null) {
+            int reach = from;
+            for (int start = indexOf(input, prefix, from); start >= 0; start = indexOf(input, prefix, start + 1)) {
+                if (start < reach) {
+                    // Проверки начали бы перекрываться — дальше обычный линейный поиск
+                    return findByStarts(input, start);
+                }
+                long scan = verify(input, start);
+                if ((int) scan >= 0) {
+                    return new Match(start, (int) scan);
+                }
+                reach = (int) (scan >>> 32);
+            }
+            return null;
+        }
+        if (factor != null && indexOf(input, factor, from) < 0) {
+            return null;
+        }
+        return findByStarts(input, from);
+    }
+
+    // Непересекающиеся вхождения слева направо; после пустого совпадения поиск сдвигается на символ
+    public List<Match> findAll(CharSequence input) {
+        List<Match> matches = new ArrayList<>();
+        if (prefix != null) {
+            // Совпадение начинается с prefix, значит, оно непустое
+            int position = 0;
+            int reach = 0;
+            for (int start = indexOf(input, prefix, 0); start >= 0; start = indexOf(input, prefix, Math.max(start + 1, position))) {
+                if (start < reach) {
+                    collect(input, start, matches);
+                    return matches;
+                }
+                long scan = verify(input, start);
+                reach = (int) (scan >>> 32);
+                if ((int) scan >= 0) {
+                    matches.add(new Match(start, (int) scan));
+                    position = (int) scan;
+                }
+            }
+            return matches;
+        }
+        if (factor != null && indexOf(input, factor, 0) < 0) {
+            return matches;
+        }
+        collect(input, 0, matches);
+        return matches;
+    }
+
+    private Match findByStarts(CharSequence input, int from) {
+        int[] ends = longestEnds(input, from);
+        for (int start = from; start < ends.length + from; start++) {
+            if (ends[start - from] >= 0) {
+                return new Match(start, ends[start - from]);
+            }
+        }
+        return null;
+    }
+
+    private void collect(CharSequence input, int from, List<Match> matches) {
+        int[] ends = longestEnds(input, from);
+        int position = from;
+        while (position < ends.length + from) {
+            int end = ends[position - from];
+            if (end < 0) {
+                position++;
+                continue;
+            }
+            matches.add(new Match(position, end));
+            position = end > position ? end : end + 1;
+        }
+    }
+
+    // Проверка кандидата прямым ДКА: в младших 32 битах — конец самого длинного совпадения или -1,
+    // в старших — позиция, до которой дошёл разбор. Каждая проверка начинается за концом
+    // предыдущей, иначе поиск переходит к обратному проходу, поэтому предфильтр читает
+    // каждый символ не больше одного раза
+    private long verify(CharSequence input, int start) {
+        int row = forward.startRow();
+        int end = -1;
+        int i = start;
+        for (int n = input.length(); i < n; ) {
+            row = forward.feed(row, input.charAt(i++));
+            if (row < 0) break;
+            if (forward.isAcceptingRow(row)) {
+                end = i;
+            }
+        }
+        return (long) i << 32 | (end & 0xffffffffL);
+    }
+
+    // ends[i - from] — конец самого длинного совпадения, начинающегося в i, или -1, для i из [from, n].
+    // Потоки хранятся по убыванию конца, поэтому при совпадении состояний остаётся первый
+    private int[] longestEnds(CharSequence input, int from) {
+        int n = input.length();
+        int classCount = reverse.getClassCount();
+        int stateCount = reverse.getStateCount();
+        int[] rows = new int[stateCount];
+        int[] threadEnds = new int[stateCount];
+        int[] nextRows = new int[stateCount];
+        int[] nextEnds = new int[stateCount];
+        // Позиция, на которой состояние уже занято потоком
+        int[] taken = new int[stateCount];
+        Arrays.fill(taken, -1);
+        int startRow = reverse.startRow();
+        int[] ends = new int[n + 1 - from];
+        ends[n - from] = reverse.isAcceptingRow(startRow) ? n : -1;
+        rows[0] = startRow;
+        threadEnds[0] = n;
+        int count = 1;
+        for (int i = n - 1; i >= from; i--) {
+            char c = input.charAt(i);
+            int nextCount = 0;
+            for (int t = 0; t < count; t++) {
+                int row = reverse.feed(rows[t], c);
+                if (row < 0 || taken[row / classCount] == i) continue;
+                taken[row / classCount] = i;
+                nextRows[nextCount] = row;
+                nextEnds[nextCount++] = threadEnds[t];
+            }
+            // Поток совпадений, кончающихся в i, — с самым близким концом, поэтому последний
+            if (taken[startRow / classCount] != i) {
+                taken[startRow / classCount] = i;
+                nextRows[nextCount] = startRow;
+                nextEnds[nextCount++] = i;
+            }
+            int[] swap = rows;
+            rows = nextRows;
+            nextRows = swap;
+            swap = threadEnds;
+            threadEnds = nextEnds;
+            nextEnds = swap;
+            count = nextCount;
+
+            int end = -1;
+            for (int t = 0; t < count; t++) {
+                if (reverse.isAcceptingRow(rows[t])) {
+                    end = threadEnds[t];
+                    break;
+                }
+            }
+            ends[i - from] = end;
+        }
+        return ends;
+    }
+
+    static int indexOf(CharSequence input, String literal, int from) {
+        if (input instanceof String string) {
+            return string.indexOf(literal, from);
+        }
+        char first = literal.charAt(0);
+        int last = input.length() - literal.length();
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            if (input.charAt(i) != first) continue;
+            int j = 1;
+            while (j < literal.length() && input.charAt(i + j) == literal.charAt(j)) {
+                j++;
+            }
+            if (j == literal.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,59 @@
+package pack;
+
+import java.util.Arrays;
+
+// Неизменяемое множество состояний НКА в виде битового массива с кешированным хешем
+final class StateSet {
+    private final long[] words;
+    private final int hash;
+
+    StateSet(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    static int hash(long[] words) {
+        return Arrays.hashCode(words);
+    }
+
+    boolean sameAs(long[] other) {
+        return Arrays.equals(words, other);
+    }
+
+    boolean contains(int state) {
+        return (words[state >>> 6] & (1L << state)) != 0;
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    // Индекс следующего установленного бита, начиная с from, или -1
+    int nextState(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) return -1;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StateSet)) return false;
+        StateSet other = (StateSet) o;
+        return hash == other.hash && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
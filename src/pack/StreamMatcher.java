@@ -0,0 +1,182 @@
+package pack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+// Потоковое сопоставление: вход подаётся частями (char[], CharBuffer, ByteBuffer в UTF-8,
+// Reader, InputStream), состояние ДКА сохраняется между частями. Допуск можно проверить в любой
+// момент; после попадания в мёртвое состояние остальной вход не читается. Экземпляр не потокобезопасен.
+public final class StreamMatcher {
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CompiledDFA dfa;
+    private int row;
+    private long consumed;
+    // Незавершённая последовательность UTF-8: первый байт, накопленные биты и число недостающих байтов
+    private int lead;
+    private int codePoint;
+    private int pendingBytes;
+
+    public StreamMatcher(CompiledDFA dfa) {
+        this.dfa = dfa;
+        reset();
+    }
+
+    public StreamMatcher(Pattern pattern) {
+        this(pattern.getAutomaton());
+    }
+
+    public StreamMatcher feed(char[] chars, int offset, int length) {
+        if (row >= 0) {
+            row = dfa.feed(row, chars, offset, offset + length);
+            consumed += length;
+        }
+        return this;
+    }
+
+    public StreamMatcher feed(CharSequence chars) {
+        if (row >= 0) {
+            row = dfa.feed(row, chars, 0, chars.length());
+            consumed += chars.length();
+        }
+        return this;
+    }
+
+    // Буфер читается от position до limit, position сдвигается до limit
+    public StreamMatcher feed(CharBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            int from = buffer.arrayOffset() + buffer.position();
+            feed(buffer.array(), from, length);
+        } else {
+            feed((CharSequence) buffer);
+        }
+        buffer.position(buffer.limit());
+        return this;
+    }
+
+    // Байты UTF-8; многобайтовая последовательность может быть разрезана между вызовами
+    public StreamMatcher feed(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int from = buffer.arrayOffset() + buffer.position();
+            feedUtf8(buffer.array(), from, from + buffer.remaining());
+        } else {
+            while (buffer.hasRemaining() && row >= 0) {
+                decode(buffer.get());
+            }
+        }
+        buffer.position(buffer.limit());
+        return this;
+    }
+
+    public StreamMatcher feed(Reader reader) throws IOException {
+        char[] chunk = new char[BUFFER_SIZE];
+        int read;
+        while (row >= 0 && (read = reader.read(chunk)) != -1) {
+            feed(chunk, 0, read);
+        }
+        return this;
+    }
+
+    public StreamMatcher feed(InputStream stream) throws IOException {
+        byte[] chunk = new byte[BUFFER_SIZE];
+        int read;
+        while (row >= 0 && (read = stream.read(chunk)) != -1) {
+            feedUtf8(chunk, 0, read);
+        }
+        return finish();
+    }
+
+    // Конец входа: незавершённая последовательность UTF-8 заменяется U+FFFD, как в CompiledDFA.feedUtf8.
+    // До вызова такой хвост не допускается — следующая часть могла бы его продолжить
+    public StreamMatcher finish() {
+        if (pendingBytes > 0) {
+            pendingBytes = 0;
+            if (row >= 0) {
+                emit(REPLACEMENT);
+            }
+        }
+        return this;
+    }
+
+    // Допускает ли автомат всё, что подано до сих пор
+    public boolean isAccepting() {
+        return pendingBytes == 0 && dfa.isAcceptingRow(row);
+    }
+
+    // Ни одно продолжение входа уже не будет допущено
+    public boolean isDead() {
+        return row < 0;
+    }
+
+    // Число символов UTF-16, прочитанных автоматом
+    public long getConsumed() {
+        return consumed;
+    }
+
+    public void reset() {
+        row = dfa.startRow();
+        consumed = 0;
+        codePoint = 0;
+        pendingBytes = 0;
+    }
+
+    private void feedUtf8(byte[] bytes, int from, int to) {
+        for (int i = from; i < to && row >= 0; i++) {
+            byte b = bytes[i];
+            if (b >= 0 && pendingBytes == 0) {
+                row = dfa.feed(row, (char) b);
+                consumed++;
+            } else {
+                decode(b);
+            }
+        }
+    }
+
+    // Некорректная последовательность заменяется одним U+FFFD, как в CompiledDFA.feedUtf8
+    private void decode(byte b) {
+        int value = b & 0xff;
+        if (pendingBytes > 0) {
+            boolean second = pendingBytes == CompiledDFA.utf8Length(lead) - 1;
+            if (second ? CompiledDFA.utf8Second(lead, value) : (value & 0xc0) == 0x80) {
+                codePoint = (codePoint << 6) | (value & 0x3f);
+                if (--pendingBytes == 0) {
+                    emit(CompiledDFA.isSurrogate(codePoint) ? REPLACEMENT : codePoint);
+                }
+                return;
+            }
+            // Оборванная последовательность: заменяем её и разбираем байт заново
+            pendingBytes = 0;
+            emit(REPLACEMENT);
+            if (row < 0) return;
+        }
+
+        int length = CompiledDFA.utf8Length(value);
+        if (length == 1) {
+            emit(value);
+        } else if (length == 0) {
+            emit(REPLACEMENT);
+        } else {
+            lead = value;
+            codePoint = value & (0x7f >> length);
+            pendingBytes = length - 1;
+        }
+    }
+
+    private void emit(int cp) {
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            row = dfa.feed(row, (char) cp);
+            consumed++;
+        } else {
+            row = dfa.feed(row, Character.highSurrogate(cp));
+            if (row >= 0) {
+                row = dfa.feed(row, Character.lowSurrogate(cp));
+            }
+            consumed += 2;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package pack;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Построение подмножеств над IntNFA: подмножества — битовые массивы long[],
+// идентификаторы выдаются через таблицу интернирования SubsetTable.
+final class SubsetConstruction {
+    // Меньше стольких подмножеств уровень обходится в вызывающем потоке
+    private static final int GRAIN = 16;
+    // Переход в подмножество, впервые найденное на текущем уровне
+    private static final int FRESH = -2;
+
+    final IntNFA nfa;
+    final int classCount;
+    final SubsetTable subsets = new SubsetTable();
+    final BitSet accepting = new BitSet();
+    // Номера шаблонов, допускаемых каждым подмножеством (только для НКА с пометками)
+    final List<int[]> matchSets = new ArrayList<>();
+    // transitions[id * classCount + cls] — номер следующего подмножества или DEAD
+    int[] transitions;
+    // Число вычисленных ε-замыканий (для RegexListener)
+    long closures;
+
+    private final boolean unanchored;
+    private long[] startSet;
+
+    private SubsetConstruction(IntNFA nfa, boolean unanchored) {
+        this.nfa = nfa;
+        this.unanchored = unanchored;
+        this.classCount = nfa.alphabet.classCount();
+        this.transitions = new int[16 * classCount];
+    }
+
+    static SubsetConstruction run(IntNFA nfa) {
+        return run(nfa, false);
+    }
+
+    // unanchored: ДКА для Σ*·L — к каждому подмножеству добавляется замыкание начального состояния,
+    // поэтому мёртвых переходов нет, а символы вне алфавита возвращают в начальное состояние
+    static SubsetConstruction run(IntNFA nfa, boolean unanchored) {
+        return run(nfa, unanchored, 1);
+    }
+
+    // threads > 1: подмножества очередного уровня обхода в ширину раскрываются параллельно
+    // в ForkJoinPool, номера выдаются затем по порядку — результат совпадает с последовательным
+    static SubsetConstruction run(IntNFA nfa, boolean unanchored, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        RegexListener listener = Instrumentation.listener;
+        long begin = listener == null ? 0 : System.nanoTime();
+        SubsetConstruction construction = new SubsetConstruction(nfa, unanchored);
+        if (threads == 1) {
+            construction.explore();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                construction.exploreParallel(pool);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (listener != null) {
+            listener.subsetConstruction(nfa.stateCount, construction.stateCount(), construction.closures,
+                    System.nanoTime() - begin);
+        }
+        return construction;
+    }
+
+    int stateCount() {
+        return subsets.size();
+    }
+
+    CompiledDFA toCompiled() {
+        return new CompiledDFA(nfa.alphabet, subsets.size(), 0, transitions, accepting);
+    }
+
+    private int start() {
+        long[] set = new long[nfa.words()];
+        nfa.addClosure(set, nfa.start);
+        closures = 1;
+        startSet = set;
+        return intern(set);
+    }
+
+    private void explore() {
+        int startId = start();
+        int empty = unanchored ? startId : CompiledDFA.DEAD;
+        Expander expander = new Expander();
+        for (int id = 0; id < subsets.size(); id++) {
+            int row = beginRow(id, empty);
+            expander.collectTargets(subsets.get(id));
+            for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                if (expander.step(cls)) {
+                    transitions[row + cls] = intern(expander.scratch);
+                }
+            }
+        }
+        closures += expander.closures;
+    }
+
+    // Обход по уровням: уровень — подмножества, найденные на предыдущем шаге. Переходы уровня
+    // вычисляются параллельно; уже известные подмножества ищутся в SubsetTable (во время
+    // параллельной фазы она только читается), новые сводятся к одному экземпляру через
+    // ConcurrentHashMap. Номера новым подмножествам выдаются последовательно в порядке
+    // (подмножество, класс) — так же, как их выдал бы последовательный обход.
+    private void exploreParallel(ForkJoinPool pool) {
+        int startId = start();
+        int empty = unanchored ? startId : CompiledDFA.DEAD;
+        int from = 0;
+        while (from < subsets.size()) {
+            int to = subsets.size();
+            Level level = new Level(from, to);
+            closures += to - from < GRAIN ? level.compute() : pool.invoke(level);
+
+            for (int id = from; id < to; id++) {
+                int row = beginRow(id, empty);
+                int offset = (id - from) * classCount;
+                for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                    int next = level.next[offset + cls];
+                    if (next == FRESH) {
+                        next = intern(level.fresh[offset + cls]);
+                    }
+                    if (next != CompiledDFA.DEAD) {
+                        transitions[row + cls] = next;
+                    }
+                }
+            }
+            from = to;
+        }
+    }
+
+    private int beginRow(int id, int empty) {
+        if (transitions.length < (id + 1) * classCount) {
+            transitions = Arrays.copyOf(transitions, Math.max(transitions.length * 2, (id + 1) * classCount));
+        }
+        int row = id * classCount;
+        Arrays.fill(transitions, row, row + classCount, empty);
+        return row;
+    }
+
+    private int intern(long[] set) {
+        return registered(subsets.size(), subsets.intern(set), set);
+    }
+
+    private int intern(StateSet set) {
+        return registered(subsets.size(), subsets.intern(set), set.words());
+    }
+
+    private int registered(int before, int id, long[] set) {
+        if (id == before && nfa.isAccepting(set)) {
+            accepting.set(id);
+        }
+        if (id == before && nfa.acceptTag != null) {
+            matchSets.add(nfa.matchSet(set));
+        }
+        return id;
+    }
+
+    // Переходы подмножеств [from, to) одного уровня; результат — число вычисленных замыканий.
+    // ForkJoin-задачи не сериализуются, Serializable достаётся от RecursiveTask
+    @SuppressWarnings("serial")
+    private final class Level extends RecursiveTask<Long> {
+        private final int from;
+        private final int to;
+        private final int base;
+        // next[(id - base) * classCount + cls] — известный номер, DEAD или FRESH (тогда подмножество в fresh)
+        private final int[] next;
+        private final StateSet[] fresh;
+        private final ConcurrentHashMap<StateSet, StateSet> found;
+
+        Level(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.base = from;
+            this.next = new int[(to - from) * classCount];
+            this.fresh = new StateSet[next.length];
+            this.found = new ConcurrentHashMap<>();
+        }
+
+        private Level(Level parent, int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.base = parent.base;
+            this.next = parent.next;
+            this.fresh = parent.fresh;
+            this.found = parent.found;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                Level left = new Level(this, from, middle);
+                left.fork();
+                long right = new Level(this, middle, to).compute();
+                return right + left.join();
+            }
+            Expander expander = new Expander();
+            for (int id = from; id < to; id++) {
+                int offset = (id - base) * classCount;
+                expander.collectTargets(subsets.get(id));
+                for (int cls = AlphabetMap.OTHER + 1; cls < classCount; cls++) {
+                    if (!expander.step(cls)) {
+                        next[offset + cls] = CompiledDFA.DEAD;
+                        continue;
+                    }
+                    int known = subsets.find(expander.scratch);
+                    if (known >= 0) {
+                        next[offset + cls] = known;
+                        continue;
+                    }
+                    StateSet set = new StateSet(expander.scratch.clone());
+                    StateSet previous = found.putIfAbsent(set, set);
+                    next[offset + cls] = FRESH;
+                    fresh[offset + cls] = previous == null ? set : previous;
+                }
+            }
+            return expander.closures;
+        }
+    }
+
+    // Буферы для вычисления переходов одного подмножества; у каждого потока свои
+    private final class Expander {
+        final long[] scratch = new long[nfa.words()];
+        long closures;
+        private int[] targets = new int[16];
+        private final int[] targetCount = new int[classCount];
+        private final int[] targetStart = new int[classCount];
+
+        // Раскладка переходов всех состояний подмножества по классам (сортировка подсчётом)
+        void collectTargets(StateSet subset) {
+            Arrays.fill(targetCount, 0);
+            int total = 0;
+            for (int s = subset.nextState(0); s >= 0; s = subset.nextState(s + 1)) {
+                for (int e = nfa.edgeOffset[s]; e < nfa.edgeOffset[s + 1]; e++) {
+                    targetCount[nfa.edgeClass[e]]++;
+                    total++;
+                }
+            }
+            if (targets.length < total) {
+                targets = new int[Math.max(total, targets.length * 2)];
+            }
+            int offset = 0;
+            for (int cls = 0; cls < classCount; cls++) {
+                targetStart[cls] = offset;
+                offset += targetCount[cls];
+                targetCount[cls] = 0;
+            }
+            for (int s = subset.nextState(0); s >= 0; s = subset.nextState(s + 1)) {
+                for (int e = nfa.edgeOffset[s]; e < nfa.edgeOffset[s + 1]; e++) {
+                    int cls = nfa.edgeClass[e];
+                    targets[targetStart[cls] + targetCount[cls]++] = nfa.edgeTarget[e];
+                }
+            }
+        }
+
+        // Подмножество после перехода по cls в scratch; false, если переходов по cls нет
+        boolean step(int cls) {
+            int count = targetCount[cls];
+            if (count == 0) {
+                return false;
+            }
+            if (unanchored) {
+                System.arraycopy(startSet, 0, scratch, 0, scratch.length);
+            } else {
+                Arrays.fill(scratch, 0);
+            }
+            int from = targetStart[cls];
+            for (int i = from; i < from + count; i++) {
+                nfa.addClosure(scratch, targets[i]);
+            }
+            closures += count;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Таблица интернирования подмножеств состояний НКА: открытая адресация по кешированному хешу,
+// битовый массив копируется только при добавлении нового подмножества.
+final class SubsetTable {
+    private final List<StateSet> subsets = new ArrayList<>();
+    private int[] slots = new int[64];
+
+    SubsetTable() {
+        Arrays.fill(slots, -1);
+    }
+
+    // Номер подмножества или -1, если его нет в таблице
+    int find(long[] set) {
+        int hash = StateSet.hash(set);
+        int mask = slots.length - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (id < 0) {
+                return -1;
+            }
+            StateSet subset = subsets.get(id);
+            if (subset.hashCode() == hash && subset.sameAs(set)) {
+                return id;
+            }
+        }
+    }
+
+    int intern(long[] set) {
+        return intern(set, StateSet.hash(set), null);
+    }
+
+    // Вариант без копирования для уже готового неизменяемого подмножества
+    int intern(StateSet set) {
+        return intern(set.words(), set.hashCode(), set);
+    }
+
+    private int intern(long[] set, int hash, StateSet ready) {
+        int mask = slots.length - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (id < 0) {
+                id = subsets.size();
+                subsets.add(ready != null ? ready : new StateSet(set.clone()));
+                slots[i] = id;
+                if (subsets.size() * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+                return id;
+            }
+            StateSet subset = subsets.get(id);
+            if (subset.hashCode() == hash && subset.sameAs(set)) {
+                return id;
+            }
+        }
+    }
+
+    StateSet get(int id) {
+        return subsets.get(id);
+    }
+
+    int size() {
+        return subsets.size();
+    }
+
+    void clear() {
+        subsets.clear();
+        Arrays.fill(slots, -1);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+        for (int id = 0; id < subsets.size(); id++) {
+            int i = mix(subsets.get(id).hashCode()) & mask;
+            while (slots[i] >= 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,44 @@
+package pack;
+
+import java.util.Random;
+
+import static pack.TestSupport.*;
+
+// Фронт в одном и нескольких словах, с таблицами по байтам и без них — ответы как у ленивого ДКА
+public class BitParallelMatcherTest {
+    public static void main(String[] args) {
+        // Одно слово
+        compare("(a|b)*.a.(a|b){3}", "ab", 1, true);
+        // Два и три слова, маленький алфавит — таблицы по байтам
+        compare("(a|b)*.a.(a|b){40}", "ab", 2, true);
+        compare("(a|b)*.a.(a|b){70}", "ab", 3, true);
+        // Много классов символов — перебор активных состояний
+        compare("[a-t]*.(a|b|c|d|e|f|g|h|i|j|k|l|m|n|o|p|q|r|s){5}.a{40}", "abcdefghijklmnopqrst", 3, false);
+        edgeCases();
+        System.out.println("BitParallelMatcherTest: ok");
+    }
+
+    private static void compare(String regex, String letters, int words, boolean tables) {
+        NFA nfa = RegexParser.parseRegexToNFA(regex);
+        BitParallelMatcher matcher = new BitParallelMatcher(nfa);
+        LazyDFA reference = new LazyDFA(nfa, 1000);
+        checkEquals(words, (matcher.getStateCount() + 63) >>> 6, regex + " words");
+        checkEquals(tables, matcher.hasChunkTables(), regex + " tables");
+        Random random = new Random(regex.hashCode());
+        for (int t = 0; t < 2000; t++) {
+            StringBuilder input = new StringBuilder();
+            for (int i = random.nextInt(120); i > 0; i--) {
+                input.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            checkEquals(reference.matches(input), matcher.matches(input), regex + " on " + input);
+        }
+    }
+
+    private static void edgeCases() {
+        BitParallelMatcher matcher = new BitParallelMatcher(RegexParser.parseRegexToNFA("a*"));
+        check(matcher.matches(""), "empty input");
+        check(!matcher.matches("aы"), "char outside alphabet");
+        check(!new BitParallelMatcher(RegexParser.parseRegexToNFA("(a|b){70}")).matches("a".repeat(69) + "\uD83D"),
+                "lone surrogate");
+    }
+}
@@ -0,0 +1,143 @@
+package pack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static pack.TestSupport.*;
+
+// Запись и чтение ДКА и наборов: ответы совпадают с исходным автоматом, испорченные данные
+// отвергаются IllegalArgumentException, а не выходом за границы буфера
+public class DFASerializerTest {
+    private static final String[] INPUTS = {"", "a", "ab", "abab", "ba", "aы", "😀", "a\uD83D", "ababababab"};
+
+    public static void main(String[] args) throws Exception {
+        roundTrip();
+        bundle();
+        corruptHeader();
+        corruptBytes();
+        corruptBundle();
+        System.out.println("DFASerializerTest: ok");
+    }
+
+    private static CompiledDFA compile(String regex) {
+        return NFAToDFAConverter.compile(RegexParser.parseRegexToNFA(regex));
+    }
+
+    private static void roundTrip() {
+        for (String regex : new String[]{"(ab)*", "a.[a-zа-я]*", "(a|b)*.a.(a|b){5}", ".*.\\.b?"}) {
+            CompiledDFA dfa = compile(regex);
+            byte[] bytes = DFASerializer.toBytes(dfa);
+            CompiledDFA copy = DFASerializer.read(ByteBuffer.wrap(bytes));
+            MappedDFA mapped = new MappedDFA(ByteBuffer.wrap(bytes));
+            checkEquals(dfa.getStateCount(), mapped.getStateCount(), regex + " states");
+            for (String input : INPUTS) {
+                checkEquals(dfa.matches(input), copy.matches(input), regex + " read on " + input);
+                checkEquals(dfa.matches(input), mapped.matches(input), regex + " mapped on " + input);
+            }
+        }
+    }
+
+    private static void bundle() throws Exception {
+        Map<String, CompiledDFA> patterns = new LinkedHashMap<>();
+        patterns.put("pairs", compile("(ab)*"));
+        patterns.put("имя", compile("a.b*"));
+        Path file = Files.createTempFile("bundle", ".dfa");
+        try {
+            DFABundle.write(patterns, file);
+            DFABundle bundle = DFABundle.open(file);
+            checkEquals(patterns.keySet(), bundle.names(), "names");
+            for (String name : patterns.keySet()) {
+                for (String input : INPUTS) {
+                    checkEquals(patterns.get(name).matches(input), bundle.get(name).matches(input), name + " on " + input);
+                }
+            }
+            checkEquals(null, bundle.get("missing"), "missing name");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void corruptHeader() {
+        byte[] valid = DFASerializer.toBytes(compile("(a|b)*.a"));
+        int states = ByteBuffer.wrap(valid).getInt(8);
+        int[][] cases = {
+                {8, -1}, {8, 0}, {8, Integer.MAX_VALUE}, {8, states + 64},
+                {12, -1}, {12, 0}, {12, 1 << 20},
+                {16, -1}, {16, states},
+                {20, -1}, {20, 0}, {20, 1 << 24},
+                {24, 0}, {24, 2},
+                {28, -1}, {28, Integer.MAX_VALUE},
+        };
+        for (int[] c : cases) {
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).putInt(c[0], c[1]);
+            checkRejected(bytes, "field at " + c[0] + " = " + c[1]);
+        }
+        for (int length = 0; length < valid.length; length += 7) {
+            checkRejected(Arrays.copyOf(valid, length), "truncated to " + length);
+        }
+    }
+
+    // Случайные повреждения: либо IllegalArgumentException при загрузке, либо автомат без сбоев
+    private static void corruptBytes() {
+        byte[] valid = DFASerializer.toBytes(compile("(ab|ba)*.c?"));
+        Random random = new Random(4);
+        for (int t = 0; t < 3000; t++) {
+            byte[] bytes = valid.clone();
+            for (int flips = 1 + random.nextInt(3); flips > 0; flips--) {
+                bytes[random.nextInt(bytes.length)] = (byte) random.nextInt(256);
+            }
+            MappedDFA mapped;
+            try {
+                mapped = new MappedDFA(ByteBuffer.wrap(bytes));
+                DFASerializer.read(ByteBuffer.wrap(bytes));
+            } catch (IllegalArgumentException expected) {
+                continue;
+            }
+            for (String input : INPUTS) {
+                mapped.matches(input);
+            }
+        }
+    }
+
+    private static void corruptBundle() throws Exception {
+        Map<String, CompiledDFA> patterns = new LinkedHashMap<>();
+        patterns.put("p", compile("ab"));
+        Path file = Files.createTempFile("bundle", ".dfa");
+        try {
+            DFABundle.write(patterns, file);
+            byte[] valid = Files.readAllBytes(file);
+            int[][] cases = {{8, -1}, {8, 1 << 28}, {16, -8}, {16, 1 << 30}, {20, -1}, {20, valid.length}, {24, -1}, {24, 1 << 30}};
+            for (int[] c : cases) {
+                byte[] bytes = valid.clone();
+                ByteBuffer.wrap(bytes).putInt(c[0], c[1]);
+                Files.write(file, bytes);
+                checkThrows(IllegalArgumentException.class, () -> open(file), "bundle field at " + c[0] + " = " + c[1]);
+            }
+            Files.write(file, Arrays.copyOf(valid, 20));
+            checkThrows(IllegalArgumentException.class, () -> open(file), "truncated directory");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void checkRejected(byte[] bytes, String message) {
+        checkThrows(IllegalArgumentException.class, () -> new MappedDFA(ByteBuffer.wrap(bytes)), message);
+        checkThrows(IllegalArgumentException.class, () -> DFASerializer.read(ByteBuffer.wrap(bytes)), message);
+    }
+
+    private static void open(Path file) {
+        try {
+            DFABundle.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package pack;
+
+import java.util.Random;
+
+import static pack.TestSupport.*;
+
+// Ленивый ДКА производных с маленьким кешем совпадает с полной таблицей, а термы не копятся после сброса
+public class DerivativeDFATest {
+    private static final String[] PATTERNS = {
+            "(a|b)*.a.(a|b){6}", "ab||ba||c", "(a.b*)||(c+)", "[a-c]*.c?", "(ab|a)*.b{2,4}", "a?||b?||c?"
+    };
+
+    public static void main(String[] args) {
+        sameAsCompiled();
+        termsAreBounded();
+        System.out.println("DerivativeDFATest: ok");
+    }
+
+    private static void sameAsCompiled() {
+        Random random = new Random(2);
+        for (String regex : PATTERNS) {
+            CompiledDFA compiled = DerivativeDFA.compile(regex);
+            DFA reference = RegexParser.parseRegexToDFA(regex, true);
+            for (int maxStates : new int[]{3, 5, 1000}) {
+                DerivativeDFA lazy = new DerivativeDFA(regex, maxStates);
+                for (int t = 0; t < 500; t++) {
+                    String input = randomText(random, random.nextInt(14));
+                    boolean expected = reference.matches(input);
+                    checkEquals(expected, compiled.matches(input), regex + " compiled on " + input);
+                    checkEquals(expected, lazy.matches(input), regex + " lazy/" + maxStates + " on " + input);
+                }
+                check(lazy.getCachedStateCount() <= maxStates, "cache bound");
+            }
+        }
+        check(!DerivativeDFA.compile("ab").matches(""), "empty input");
+        check(!DerivativeDFA.compile("ab").matches("aы"), "char outside alphabet");
+        check(new DerivativeDFA("a*", 3).matches(""), "empty input accepted");
+    }
+
+    // Раньше каждый сброс кеша оставлял все построенные термы и их производные
+    private static void termsAreBounded() {
+        DerivativeDFA lazy = new DerivativeDFA("(a|b)*.a.(a|b){14}", 16);
+        Random random = new Random(3);
+        int peak = 0;
+        for (int t = 0; t < 200; t++) {
+            lazy.matches(randomText(random, 200).replace('c', 'a'));
+            peak = Math.max(peak, lazy.getTermCount());
+        }
+        check(lazy.getCacheFlushes() > 100, "cache was flushed: " + lazy.getCacheFlushes());
+        check(peak < 500, "terms after flushes: " + peak);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append("abc".charAt(random.nextInt(3)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,259 @@
+package pack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import static pack.TestSupport.*;
+
+// Все движки сопоставления дают одинаковые ответы на случайных выражениях и входах, включая пустой вход,
+// символы вне алфавита и суррогаты. Эталон — CompiledDFA из NFAToDFAConverter.compile; для выражений
+// без shuffle он сверяется с java.util.regex, с shuffle — с независимым построением по производным
+public class EnginesTest {
+    private static final String[] ATOMS = {"a", "b", "c", "ab", "[a-c]", "[^b]", "[bd]", ".", "\\.", "[a\\-]"};
+    private static final String[] JAVA_ATOMS = {"a", "b", "c", "ab", "[a-c]", "[^b]", "[bd]", ".", "\\.", "[a\\-]"};
+    private static final String[] REPEATS = {"{2}", "{1,3}", "{0,2}", "{2,}", "{0}"};
+    // Символы входа: буквы алфавита, символ вне его, пара суррогатов и одиночный суррогат
+    private static final String[] SYMBOLS = {"a", "b", "c", "d", ".", "-", "ы", "😀", "\uD83D"};
+
+    private static final Random random = new Random(6);
+
+    public static void main(String[] args) {
+        for (int t = 0; t < 150; t++) {
+            String[] regex = generate(3, t % 3 == 0);
+            sameAnswers(regex[0], regex[1]);
+        }
+        multiPatterns();
+        cacheAndBatch();
+        batchListener();
+        System.out.println("EnginesTest: ok");
+    }
+
+    private static void sameAnswers(String regex, String javaRegex) {
+        NFA nfa = RegexParser.parseRegexToNFA(regex);
+        Predicate<CharSequence> reference = reference(nfa);
+        java.util.regex.Pattern oracle = javaRegex == null ? null
+                : java.util.regex.Pattern.compile(javaRegex, java.util.regex.Pattern.DOTALL);
+
+        CompiledDFA compiled = NFAToDFAConverter.compile(nfa);
+        CompiledDFA minimal = DFAMinimizer.minimize(compiled);
+        DFA legacy = legacy(nfa);
+        NFA glushkov = RegexParser.parseRegexToGlushkovNFA(regex);
+        Map<String, Predicate<CharSequence>> engines = new LinkedHashMap<>();
+        if (legacy != null) {
+            engines.put("DFA", input -> legacy.matches(input.toString()));
+        }
+        engines.put("minimized", minimal::matches);
+        engines.put("parallel subsets", NFAToDFAConverter.compile(nfa, 2)::matches);
+        engines.put("LazyDFA", new LazyDFA(nfa, 3)::matches);
+        engines.put("Glushkov", NFAToDFAConverter.compile(glushkov)::matches);
+        engines.put("BitParallel", new BitParallelMatcher(nfa)::matches);
+        engines.put("BitParallel Glushkov", new BitParallelMatcher(glushkov)::matches);
+        engines.put("DerivativeDFA", DerivativeDFA.compile(regex)::matches);
+        engines.put("DerivativeDFA lazy", new DerivativeDFA(regex, 3)::matches);
+        engines.put("BytecodeDFA", BytecodeDFA.compile(minimal));
+        engines.put("MappedDFA", new MappedDFA(ByteBuffer.wrap(DFASerializer.toBytes(minimal)))::matches);
+        engines.put("DFASerializer.read", DFASerializer.read(ByteBuffer.wrap(DFASerializer.toBytes(compiled)))::matches);
+        engines.put("StreamMatcher", input -> {
+            int half = input.length() / 2;
+            return new StreamMatcher(compiled).feed(input.subSequence(0, half))
+                    .feed(input.subSequence(half, input.length())).isAccepting();
+        });
+        engines.put("Pattern", Pattern.compile(regex)::matches);
+        Searcher searcher = Searcher.compile(regex);
+
+        CharSequence[] batch = new CharSequence[40];
+        for (int k = 0; k < batch.length; k++) {
+            String input = k == 0 ? "" : randomInput(1 + random.nextInt(8));
+            batch[k] = input;
+            boolean expected = reference.test(input);
+            if (oracle != null && input.chars().noneMatch(c -> Character.isSurrogate((char) c))) {
+                checkEquals(oracle.matcher(input).matches(), expected, regex + " java.util.regex on " + input);
+            }
+            for (Map.Entry<String, Predicate<CharSequence>> engine : engines.entrySet()) {
+                checkEquals(expected, engine.getValue().test(input), regex + " " + engine.getKey() + " on " + input);
+            }
+            byte[] utf8 = input.getBytes(StandardCharsets.UTF_8);
+            // Одиночный суррогат в UTF-8 не кодируется
+            if (new String(utf8, StandardCharsets.UTF_8).equals(input)) {
+                checkEquals(expected, new StreamMatcher(compiled).feed(ByteBuffer.wrap(utf8)).isAccepting(),
+                        regex + " UTF-8 stream on " + input);
+            }
+            checkEquals(findAll(reference, input), searcher.findAll(input), regex + " Searcher on " + input);
+        }
+
+        BitSet expected = new BitSet();
+        for (int k = 0; k < batch.length; k++) {
+            expected.set(k, reference.test(batch[k]));
+        }
+        BitSet out = new BitSet();
+        compiled.matchAll(batch, out);
+        checkEquals(expected, out, regex + " matchAll");
+        out.clear();
+        compiled.matchAll(batch, out, ForkJoinPool.commonPool());
+        checkEquals(expected, out, regex + " parallel matchAll");
+    }
+
+    // Старое построение на множествах отказывается от больших алфавитов ([^b], "."); тогда null
+    private static DFA legacy(NFA nfa) {
+        try {
+            return NFAToDFAConverter.convert(nfa);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Predicate<CharSequence> reference(NFA nfa) {
+        return NFAToDFAConverter.compile(nfa)::matches;
+    }
+
+    // Самое левое, затем самое длинное совпадение перебором всех подстрок
+    private static List<Match> findAll(Predicate<CharSequence> reference, String input) {
+        List<Match> matches = new ArrayList<>();
+        int position = 0;
+        while (position <= input.length()) {
+            Match found = null;
+            for (int start = position; start <= input.length() && found == null; start++) {
+                for (int end = input.length(); end >= start; end--) {
+                    if (reference.test(input.substring(start, end))) {
+                        found = new Match(start, end);
+                        break;
+                    }
+                }
+            }
+            if (found == null) break;
+            matches.add(found);
+            position = found.end() > found.start() ? found.end() : found.end() + 1;
+        }
+        return matches;
+    }
+
+    private static void multiPatterns() {
+        for (int t = 0; t < 30; t++) {
+            List<String> regexes = new ArrayList<>();
+            List<Predicate<CharSequence>> references = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String regex = generate(2, false)[0];
+                regexes.add(regex);
+                references.add(reference(RegexParser.parseRegexToNFA(regex)));
+            }
+            MultiDFA multi = MultiDFA.compile(regexes);
+            checkEquals(3, multi.getPatternCount(), "pattern count");
+            for (int k = 0; k < 30; k++) {
+                String input = randomInput(random.nextInt(6));
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    if (references.get(i).test(input)) expected.add(i);
+                }
+                int[] actual = multi.match(input);
+                checkEquals(expected.toString(), Arrays.toString(actual), regexes + " MultiDFA on " + input);
+                checkEquals(!expected.isEmpty(), multi.matchesAny(input), regexes + " matchesAny on " + input);
+                if (actual.length > 0) {
+                    actual[0] = -1;
+                    checkEquals(expected.toString(), Arrays.toString(multi.match(input)), "match result is a copy");
+                }
+            }
+        }
+    }
+
+    private static void cacheAndBatch() {
+        PatternCache cache = new PatternCache(4, 1L << 20);
+        for (int t = 0; t < 20; t++) {
+            String regex = generate(2, false)[0];
+            Pattern pattern = cache.get(regex);
+            check(cache.get(regex) == pattern, "cached " + regex);
+            Predicate<CharSequence> reference = reference(RegexParser.parseRegexToNFA(regex));
+            CharSequence[] inputs = new CharSequence[5];
+            BitSet expected = new BitSet();
+            for (int k = 0; k < inputs.length; k++) {
+                inputs[k] = randomInput(random.nextInt(6));
+                expected.set(k, reference.test(inputs[k]));
+            }
+            BitSet out = new BitSet();
+            pattern.matchAll(inputs, out);
+            checkEquals(expected, out, regex + " Pattern.matchAll");
+        }
+        check(cache.size() <= 4, "cache bound: " + cache.size());
+        check(cache.getEvictionCount() > 0, "evictions");
+        cache.clear();
+        checkEquals(0, cache.size(), "cleared");
+        checkEquals(0L, cache.getEstimatedBytes(), "cleared bytes");
+        BitSet out = new BitSet();
+        Pattern.compile("a*").matchAll(new CharSequence[0], out);
+        check(out.isEmpty(), "empty batch");
+    }
+
+    // matchAll сообщает приёмнику о каждом входе пакета, как matches
+    private static void batchListener() {
+        Pattern pattern = Pattern.compile("a(b|c)*");
+        CharSequence[] inputs = new CharSequence[100];
+        long hits = 0;
+        long chars = 0;
+        for (int k = 0; k < inputs.length; k++) {
+            inputs[k] = k % 3 == 0 ? "a" + "bc".repeat(k % 7) : randomInput(k % 5);
+            hits += pattern.matches(inputs[k]) ? 1 : 0;
+            chars += inputs[k].length();
+        }
+        RegexMetrics metrics = new RegexMetrics();
+        Instrumentation.setListener(metrics);
+        try {
+            BitSet out = new BitSet();
+            pattern.matchAll(inputs, out);
+            pattern.getAutomaton().matchAll(Arrays.asList(inputs), out);
+            pattern.getAutomaton().matchAll(inputs, out, ForkJoinPool.commonPool());
+        } finally {
+            Instrumentation.setListener(null);
+        }
+        checkEquals(3L * inputs.length, metrics.getMatchCount(), "batch match events");
+        checkEquals(3 * hits, metrics.getMatchHits(), "batch hits");
+        checkEquals(3 * chars, metrics.getMatchedChars(), "batch chars");
+    }
+
+    // {выражение, то же для java.util.regex или null, если в нём есть shuffle}
+    private static String[] generate(int depth, boolean shuffle) {
+        if (depth <= 0 || random.nextInt(5) == 0) {
+            int i = random.nextInt(ATOMS.length);
+            return new String[]{ATOMS[i], JAVA_ATOMS[i]};
+        }
+        String[] x = generate(depth - 1, shuffle);
+        switch (random.nextInt(6)) {
+            case 0:
+                return wrap(x, "*");
+            case 1:
+                return wrap(x, "+");
+            case 2:
+                return wrap(x, "?");
+            case 3:
+                return wrap(x, REPEATS[random.nextInt(REPEATS.length)]);
+            case 4: {
+                String[] y = generate(depth - 1, shuffle);
+                return new String[]{"(" + x[0] + "|" + y[0] + ")", java(x, y, "(?:" + x[1] + "|" + y[1] + ")")};
+            }
+            default: {
+                String[] y = generate(depth - 1, shuffle);
+                if (shuffle && random.nextBoolean()) {
+                    return new String[]{"(" + x[0] + "||" + y[0] + ")", null};
+                }
+                return new String[]{"(" + x[0] + "." + y[0] + ")", java(x, y, "(?:" + x[1] + ")(?:" + y[1] + ")")};
+            }
+        }
+    }
+
+    private static String[] wrap(String[] x, String suffix) {
+        return new String[]{"(" + x[0] + ")" + suffix, x[1] == null ? null : "(?:" + x[1] + ")" + suffix};
+    }
+
+    private static String java(String[] x, String[] y, String combined) {
+        return x[1] == null || y[1] == null ? null : combined;
+    }
+
+    private static String randomInput(int length) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            input.append(SYMBOLS[random.nextInt(SYMBOLS.length)]);
+        }
+        return input.toString();
+    }
+}
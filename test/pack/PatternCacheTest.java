@@ -0,0 +1,122 @@
+package pack;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+import static pack.TestSupport.*;
+
+// Счётчики попаданий, ожидание чужой компиляции, clear() во время компиляции и вытеснение CLOCK
+public class PatternCacheTest {
+    public static void main(String[] args) throws Exception {
+        counters();
+        waitIsNotHit();
+        clearDuringCompile();
+        evictionByEntries();
+        insertedSurvivesSweep();
+        evictionByBytes();
+        System.out.println("PatternCacheTest: ok");
+    }
+
+    private static void counters() {
+        PatternCache cache = new PatternCache(16, 1L << 20);
+        Pattern first = cache.get("a.b*");
+        check(cache.get("a.b*") == first, "hit returns cached pattern");
+        checkEquals(1L, cache.getMissCount(), "misses");
+        checkEquals(1L, cache.getHitCount(), "hits");
+        check(cache.getEstimatedBytes() > 0, "weight accounted");
+        checkThrows(IllegalArgumentException.class, () -> cache.get("(a"), "bad regex");
+        checkEquals(1, cache.size(), "failed compile is not cached");
+    }
+
+    private static void waitIsNotHit() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PatternCache cache = new PatternCache(16, 1L << 20, blocking(started, release));
+        Thread compiling = new Thread(() -> cache.get("abc"));
+        compiling.start();
+        started.await();
+        Thread waiting = new Thread(() -> cache.get("abc"));
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        compiling.join();
+        waiting.join();
+        checkEquals(1L, cache.getMissCount(), "one compile");
+        checkEquals(1L, cache.getWaitCount(), "waiter counted as wait");
+        checkEquals(0L, cache.getHitCount(), "waiter is not a hit");
+    }
+
+    private static void clearDuringCompile() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PatternCache cache = new PatternCache(16, 1L << 20, blocking(started, release));
+        Thread compiling = new Thread(() -> cache.get("abc"));
+        compiling.start();
+        started.await();
+        cache.clear();
+        release.countDown();
+        compiling.join();
+        checkEquals(0, cache.size(), "cleared entry stays removed");
+        checkEquals(0L, cache.getEstimatedBytes(), "no weight for removed entry");
+        for (int i = 0; i < 100; i++) {
+            cache.get("x" + i);
+            cache.clear();
+        }
+        checkEquals(0L, cache.getEstimatedBytes(), "byte counter does not drift");
+    }
+
+    // Все записи отмечены обращением: вытесняется старейшая, а не только что добавленная
+    private static void insertedSurvivesSweep() {
+        PatternCache cache = new PatternCache(2, 1L << 20);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("b");
+        Pattern c = cache.get("c");
+        check(cache.get("c") == c, "new entry kept");
+        checkEquals(2, cache.size(), "size bound");
+        checkEquals(3L, cache.getMissCount(), "misses");
+    }
+
+    private static void evictionByEntries() {
+        PatternCache cache = new PatternCache(3, 1L << 20);
+        cache.get("a");
+        cache.get("b");
+        cache.get("c");
+        cache.get("a");
+        cache.get("d");
+        checkEquals(3, cache.size(), "size bound");
+        checkEquals(1L, cache.getEvictionCount(), "one eviction");
+        long misses = cache.getMissCount();
+        cache.get("a");
+        checkEquals(misses, cache.getMissCount(), "recently used entry survives");
+        cache.get("b");
+        checkEquals(misses + 1, cache.getMissCount(), "unreferenced entry evicted");
+    }
+
+    private static void evictionByBytes() {
+        long one = Pattern.compile("abc").getAutomaton().estimatedSize() + 6;
+        PatternCache cache = new PatternCache(100, one + one / 2);
+        for (String regex : new String[]{"abc", "abd", "abe", "abf"}) {
+            cache.get(regex);
+            check(cache.getEstimatedBytes() <= one + one / 2, "byte bound after " + regex);
+        }
+        checkEquals(1, cache.size(), "only one entry fits");
+        cache.clear();
+        checkEquals(0L, cache.getEstimatedBytes(), "clear resets bytes");
+    }
+
+    private static Function<String, Pattern> blocking(CountDownLatch started, CountDownLatch release) {
+        return regex -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return Pattern.compileUncached(regex);
+        };
+    }
+}
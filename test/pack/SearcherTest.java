@@ -0,0 +1,124 @@
+package pack;
+
+import java.util.List;
+import java.util.Random;
+
+import static pack.TestSupport.*;
+
+// Поиск с предфильтром совпадает с поиском без него, пустые совпадения, линейность при литеральном префиксе
+public class SearcherTest {
+    private static final String[] PATTERNS = {
+            "ab", "ab.c*", "a.b|a.c", "ab(c|ba)*", "ba*", "a..*.b", "abab", "(ab)+c?", "a*", "b?", "[ab]c"
+    };
+
+    public static void main(String[] args) {
+        sameAsWithoutPrefilter();
+        emptyMatches();
+        prefixSearchIsLinear();
+        searchWithoutPrefixIsLinear();
+        System.out.println("SearcherTest: ok");
+    }
+
+    private static void sameAsWithoutPrefilter() {
+        Random random = new Random(1);
+        for (String regex : PATTERNS) {
+            Searcher filtered = Searcher.compile(regex);
+            Searcher plain = new Searcher(RegexParser.parseRegexToNFA(regex));
+            for (int t = 0; t < 300; t++) {
+                String text = randomText(random, random.nextInt(40));
+                checkEquals(plain.findAll(text), filtered.findAll(text), regex + " findAll on " + text);
+                int from = random.nextInt(text.length() + 1);
+                checkEquals(plain.find(text, from), filtered.find(text, from), regex + " find on " + text);
+                checkEquals(plain.findAll(text), filtered.findAll(new StringBuilder(text)), regex + " CharSequence " + text);
+            }
+        }
+        check(Searcher.compile("ab.c*").hasPrefilter(), "prefix literal used");
+    }
+
+    private static void emptyMatches() {
+        Searcher searcher = Searcher.compile("a*");
+        checkEquals(List.of(new Match(0, 0), new Match(1, 3), new Match(3, 3), new Match(4, 4)),
+                searcher.findAll("baab"), "empty matches between symbols");
+        checkEquals(List.of(new Match(0, 0)), searcher.findAll(""), "empty input");
+        checkEquals(new Match(0, 0), searcher.find("b"), "empty match at start");
+        checkEquals(null, Searcher.compile("ab").find(""), "no match in empty input");
+        checkEquals(List.of(), Searcher.compile("ab").findAll("😀ы"), "chars outside alphabet");
+    }
+
+    // Каждый кандидат "a" без совпадения раньше проверялся до конца текста — O(n²) чтений
+    private static void prefixSearchIsLinear() {
+        Searcher searcher = Searcher.compile("a..*.b");
+        check(searcher.hasPrefilter(), "prefix literal used");
+        for (int n : new int[]{1_000, 20_000, 80_000}) {
+            CountingSequence text = new CountingSequence("a".repeat(n));
+            checkEquals(null, searcher.find(text), "no match");
+            check(text.reads <= 4L * n, "find reads " + text.reads + " chars of " + n);
+            text.reads = 0;
+            checkEquals(List.of(), searcher.findAll(text), "no matches");
+            check(text.reads <= 4L * n, "findAll reads " + text.reads + " chars of " + n);
+        }
+        CountingSequence text = new CountingSequence("a".repeat(50_000) + "b");
+        checkEquals(new Match(0, 50_001), searcher.find(text), "match spanning text");
+        check(text.reads <= 4L * 50_001, "find reads " + text.reads);
+
+        // Первая проверка доходит до конца текста, дальше кандидаты перекрываются и поиск идёт без префикса
+        Searcher overlapping = Searcher.compile("x.(x*.y)?");
+        check(overlapping.hasPrefilter(), "prefix literal used");
+        for (int n : new int[]{8_000, 50_000}) {
+            text = new CountingSequence("x".repeat(n));
+            checkEquals(n, overlapping.findAll(text).size(), "every x");
+            check(text.reads <= 4L * n, "findAll reads " + text.reads + " chars of " + n);
+            text.reads = 0;
+            checkEquals(new Match(1, 2), overlapping.find(text, 1), "x after start");
+            check(text.reads <= 4L * n, "find reads " + text.reads + " chars of " + n);
+        }
+    }
+
+    // Прямой ДКА от каждого начала дочитывал x* до конца текста — около n²/2 чтений
+    private static void searchWithoutPrefixIsLinear() {
+        Searcher searcher = Searcher.compile("(x*.y)|x");
+        check(!searcher.hasPrefilter(), "no prefix literal");
+        for (int n : new int[]{8_000, 50_000}) {
+            CountingSequence text = new CountingSequence("x".repeat(n));
+            checkEquals(new Match(0, 1), searcher.find(text), "first x");
+            check(text.reads <= 3L * n, "find reads " + text.reads + " chars of " + n);
+            text.reads = 0;
+            checkEquals(n, searcher.findAll(text).size(), "every x");
+            check(text.reads <= 3L * n, "findAll reads " + text.reads + " chars of " + n);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append("abc".charAt(random.nextInt(3)));
+        }
+        return text.toString();
+    }
+
+    // Считает чтения символов, чтобы проверять объём работы, а не время
+    private static final class CountingSequence implements CharSequence {
+        private final String text;
+        long reads;
+
+        CountingSequence(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            reads++;
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package pack;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static pack.TestSupport.*;
+
+// Разбор UTF-8 в StreamMatcher и CompiledDFA.feedUtf8 совпадает с декодированием new String(bytes, UTF_8):
+// избыточно длинные формы, суррогаты и значения больше U+10FFFF заменяются U+FFFD
+public class StreamMatcherTest {
+    public static void main(String[] args) throws Exception {
+        malformed();
+        sameAsCharsetDecoder();
+        chunks();
+        truncatedTail();
+        System.out.println("StreamMatcherTest: ok");
+    }
+
+    private static void malformed() {
+        for (int[] sequence : new int[][]{
+                {0xc0, 0xaf}, {0xe0, 0x80, 0xaf}, {0xf0, 0x80, 0x80, 0xaf}, // избыточно длинные '/'
+                {0xed, 0xa0, 0x80}, {0xed, 0xbf, 0xbf},                        // суррогаты
+                {0xf4, 0x90, 0x80, 0x80}, {0xf7, 0xbf, 0xbf, 0xbf}}) {         // больше U+10FFFF
+            byte[] bytes = bytes(sequence);
+            String decoded = new String(bytes, StandardCharsets.UTF_8);
+            check(!decoded.contains("/") && decoded.chars().noneMatch(c -> Character.isSurrogate((char) c)), "decoder rejects it");
+            CompiledDFA dfa = compile("z" + decoded + "z");
+            check(accepts(dfa, bytes), Arrays.toString(sequence) + " as decoder");
+            check(!accepts(compile("z/z"), bytes), Arrays.toString(sequence) + " not '/'");
+        }
+        check(accepts(compile("z😀z"), "😀".getBytes(StandardCharsets.UTF_8)), "supplementary code point");
+        check(accepts(compile("zaz"), "a".getBytes(StandardCharsets.UTF_8)), "ascii");
+    }
+
+    // Случайные байты с перевесом старших: ответ на шаблон из их декодированной строки — «да»
+    private static void sameAsCharsetDecoder() {
+        Random random = new Random(5);
+        int[] interesting = {0x80, 0x8f, 0x90, 0x9f, 0xa0, 0xbf, 0xc0, 0xc1, 0xc2, 0xdf, 0xe0, 0xed, 0xef, 0xf0, 0xf4, 0xf5, 0xff};
+        for (int t = 0; t < 4000; t++) {
+            int[] sequence = new int[random.nextInt(10)];
+            for (int i = 0; i < sequence.length; i++) {
+                sequence[i] = random.nextInt(3) == 0 ? 'a' + random.nextInt(2) : interesting[random.nextInt(interesting.length)];
+            }
+            byte[] bytes = bytes(sequence);
+            String decoded = new String(bytes, StandardCharsets.UTF_8);
+            check(accepts(compile("z" + decoded + "z"), bytes), Arrays.toString(sequence) + " -> " + decoded);
+        }
+    }
+
+    // Последовательность, разрезанная между вызовами feed, разбирается так же
+    private static void chunks() throws Exception {
+        String text = "zаб😀ы�z";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        CompiledDFA dfa = compile(text);
+        for (int cut = 0; cut <= bytes.length; cut++) {
+            StreamMatcher matcher = new StreamMatcher(dfa);
+            matcher.feed(ByteBuffer.wrap(bytes, 0, cut)).feed(ByteBuffer.wrap(bytes, cut, bytes.length - cut));
+            check(matcher.isAccepting(), "cut at " + cut);
+            StreamMatcher direct = new StreamMatcher(dfa);
+            direct.feed(ByteBuffer.wrap(bytes, 0, cut).asReadOnlyBuffer());
+            direct.feed(ByteBuffer.wrap(bytes, cut, bytes.length - cut).asReadOnlyBuffer());
+            check(direct.isAccepting(), "direct buffer cut at " + cut);
+        }
+        check(new StreamMatcher(dfa).feed(new ByteArrayInputStream(bytes)).isAccepting(), "InputStream");
+        check(new StreamMatcher(dfa).feed(new StringReader(text)).isAccepting(), "Reader");
+        StreamMatcher matcher = new StreamMatcher(dfa);
+        checkEquals((long) text.length(), matcher.feed(text).getConsumed(), "consumed");
+        check(!new StreamMatcher(dfa).feed(ByteBuffer.wrap(bytes, 0, 3)).isAccepting(), "pending sequence is not accepted");
+        check(new StreamMatcher(NFAToDFAConverter.compile(RegexParser.parseRegexToNFA("a*"))).isAccepting(), "empty input");
+    }
+
+    // Оборванная последовательность в конце входа после finish() — один U+FFFD, как у feedUtf8 и декодера
+    private static void truncatedTail() throws Exception {
+        CompiledDFA any = NFAToDFAConverter.compile(RegexParser.parseRegexToNFA("."));
+        for (int[] sequence : new int[][]{{0xc3}, {0xe2, 0x82}, {0xf0, 0x9f, 0x98}, {0x7a, 0xc3}}) {
+            byte[] bytes = bytes(sequence);
+            boolean expected = new String(bytes, StandardCharsets.UTF_8).length() == 1;
+            checkEquals(expected, any.isAcceptingRow(any.feedUtf8(any.startRow(), ByteBuffer.wrap(bytes), 0, bytes.length)),
+                    "feedUtf8 on " + Arrays.toString(sequence));
+            checkEquals(expected, new StreamMatcher(any).feed(new ByteArrayInputStream(bytes)).isAccepting(),
+                    "InputStream on " + Arrays.toString(sequence));
+            StreamMatcher matcher = new StreamMatcher(any);
+            for (byte b : bytes) {
+                matcher.feed(ByteBuffer.wrap(new byte[]{b}));
+            }
+            check(!matcher.isAccepting(), "pending before finish on " + Arrays.toString(sequence));
+            checkEquals(expected, matcher.finish().isAccepting(), "finish on " + Arrays.toString(sequence));
+            checkEquals(expected, matcher.finish().isAccepting(), "second finish on " + Arrays.toString(sequence));
+        }
+        byte[] bytes = bytes(0x7a, 0xc3);
+        check(new StreamMatcher(compile("z\uFFFD")).feed(new ByteArrayInputStream(bytes)).isAccepting(), "z and replacement");
+    }
+
+    // Шаблон, допускающий ровно строку text: каждый символ экранирован
+    private static CompiledDFA compile(String text) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            regex.append('\\').append(c);
+        }
+        return NFAToDFAConverter.compile(RegexParser.parseRegexToNFA(regex.toString()));
+    }
+
+    // Вход обрамляется 'z', чтобы в конце не оставалось незавершённой последовательности
+    private static boolean accepts(CompiledDFA dfa, byte[] input) {
+        byte[] bytes = new byte[input.length + 2];
+        bytes[0] = 'z';
+        System.arraycopy(input, 0, bytes, 1, input.length);
+        bytes[bytes.length - 1] = 'z';
+        boolean direct = dfa.isAcceptingRow(dfa.feedUtf8(dfa.startRow(), ByteBuffer.wrap(bytes), 0, bytes.length));
+        StreamMatcher matcher = new StreamMatcher(dfa);
+        for (byte b : bytes) {
+            matcher.feed(ByteBuffer.wrap(new byte[]{b}));
+        }
+        checkEquals(direct, matcher.isAccepting(), "StreamMatcher and feedUtf8 agree on " + Arrays.toString(bytes));
+        return direct;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}